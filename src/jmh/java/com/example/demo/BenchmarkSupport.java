@@ -0,0 +1,66 @@
+package com.example.demo;
+
+import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.convert.DefaultDbRefResolver;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.repository.query.MongoQueryMethod;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.data.repository.core.support.DefaultRepositoryMetadata;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+
+/**
+ * Database-less setup of the benchmarked components. The benchmarks measure the inheritance layer only, so mongo
+ * operations are stubbed: they answer {@code getConverter()} and return stubs (or {@code null}) for everything else.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+public class BenchmarkSupport {
+
+	public static MongoMappingContext mappingContext() {
+		MongoMappingContext mappingContext = new MongoMappingContext();
+		mappingContext.setSimpleTypeHolder(new MongoCustomConversions(Collections.emptyList()).getSimpleTypeHolder());
+		mappingContext.afterPropertiesSet();
+		return mappingContext;
+	}
+
+	public static MappingMongoConverter converter(MongoMappingContext mappingContext) {
+		MappingMongoConverter converter = new MappingMongoConverter(
+			new DefaultDbRefResolver(stub(MongoDbFactory.class, null)), mappingContext);
+		converter.afterPropertiesSet();
+		return converter;
+	}
+
+	public static MongoOperations operations(MongoConverter converter) {
+		return stub(MongoOperations.class, converter);
+	}
+
+	public static MongoQueryMethod queryMethod(Class<?> repositoryInterface, Method method, MongoOperations operations) {
+		return new MongoQueryMethod(method, new DefaultRepositoryMetadata(repositoryInterface),
+			new SpelAwareProxyProjectionFactory(), operations.getConverter().getMappingContext());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T stub(Class<T> type, MongoConverter converter) {
+		InvocationHandler handler = new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("getConverter"))
+					return converter;
+				if (method.getReturnType().isInterface())
+					return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {method.getReturnType()}, this);
+				return null;
+			}
+		};
+
+		return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler);
+	}
+
+}
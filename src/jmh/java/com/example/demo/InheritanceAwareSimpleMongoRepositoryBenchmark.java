@@ -0,0 +1,57 @@
+package com.example.demo;
+
+import com.example.demo.domain.Car;
+import com.example.demo.domain.Thing;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Discriminator criteria building of the repository calls, for a type covering its collection (no discriminator)
+ * and a subtype.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class InheritanceAwareSimpleMongoRepositoryBenchmark {
+
+	private InheritanceAwareSimpleMongoRepository<Thing, String> thingRepository;
+	private InheritanceAwareSimpleMongoRepository<Car, String> carRepository;
+
+	@Setup
+	public void setup() {
+		MongoOperations operations = BenchmarkSupport.operations(
+			BenchmarkSupport.converter(BenchmarkSupport.mappingContext()));
+		MongoRepositoryFactory factory = new MongoRepositoryFactory(operations);
+
+		thingRepository = new InheritanceAwareSimpleMongoRepository<>(factory.getEntityInformation(Thing.class), operations);
+		carRepository = new InheritanceAwareSimpleMongoRepository<>(factory.getEntityInformation(Car.class), operations);
+	}
+
+	@Benchmark
+	public Criteria thingIdCriteria() {
+		return thingRepository.getIdCriteria("5aa1c5c5e4b0a1b2c3d4e5f6");
+	}
+
+	@Benchmark
+	public Criteria carIdCriteria() {
+		return carRepository.getIdCriteria("5aa1c5c5e4b0a1b2c3d4e5f6");
+	}
+
+	@Benchmark
+	public Query thingQuery() {
+		return thingRepository.getQuery();
+	}
+
+	@Benchmark
+	public Query carQuery() {
+		return carRepository.getQuery();
+	}
+
+}
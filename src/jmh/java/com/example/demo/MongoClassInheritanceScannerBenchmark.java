@@ -0,0 +1,50 @@
+package com.example.demo;
+
+import com.example.demo.domain.Car;
+import com.example.demo.domain.Thing;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Type lookups done by each repository call.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MongoClassInheritanceScannerBenchmark {
+
+	private MongoClassInheritanceScanner scanner;
+	private ClassLoader classLoader;
+
+	@Setup
+	public void setup() {
+		scanner = MongoClassInheritanceScanner.getInstance();
+		classLoader = Thing.class.getClassLoader();
+	}
+
+	@Benchmark
+	public List<Class> getAllClasses() {
+		return scanner.getAllClasses(Thing.class.getName(), classLoader);
+	}
+
+	@Benchmark
+	public List<String> getAliases() {
+		return scanner.getAliases(Thing.class);
+	}
+
+	@Benchmark
+	public boolean isSubtypeAlias() {
+		return scanner.isSubtypeAlias("boat", Thing.class);
+	}
+
+	@Benchmark
+	public Criteria createInheritanceCriteria() {
+		return scanner.createInheritanceCritera(Car.class);
+	}
+
+}
@@ -0,0 +1,31 @@
+package com.example.demo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start of the scanner, reading {@value MongoClassInheritanceScanner#INDEX_LOCATION} manifests vs scanning the
+ * classpath. Each fork measures a single first construction, before the JIT and the class metadata caches warm up.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class MongoClassInheritanceScannerStartupBenchmark {
+
+	@Benchmark
+	public MongoClassInheritanceScanner manifest() {
+		return new MongoClassInheritanceScanner(MongoClassInheritanceScanner.class.getClassLoader(), true);
+	}
+
+	@Benchmark
+	public MongoClassInheritanceScanner scan() {
+		return new MongoClassInheritanceScanner(MongoClassInheritanceScanner.class.getClassLoader(), false);
+	}
+
+}
@@ -0,0 +1,81 @@
+package com.example.demo;
+
+import com.example.demo.domain.Boat;
+import com.example.demo.domain.Car;
+import com.example.demo.domain.Thing;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.convert.EntityInstantiators;
+import org.springframework.data.convert.MappingContextTypeInformationMapper;
+import org.springframework.data.convert.SimpleTypeInformationMapper;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of mixed {@link Thing}, {@link Car} and {@link Boat} documents read by {@code ThingRepository}, with
+ * {@link MongoTypeGraphTypeMapper} and with the default type mapper. Each invocation decodes the whole batch.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MongoTypeGraphTypeMapperBenchmark {
+
+	private static final int BATCH = 10_000;
+
+	private MappingMongoConverter typeGraphConverter;
+	private MappingMongoConverter defaultConverter;
+	private Document[] documents;
+
+	@Setup
+	public void setup() {
+		MongoMappingContext mappingContext = BenchmarkSupport.mappingContext();
+
+		defaultConverter = BenchmarkSupport.converter(mappingContext);
+
+		MongoTypeGraphTypeMapper typeMapper = new MongoTypeGraphTypeMapper(Arrays.asList(
+			new MappingContextTypeInformationMapper(mappingContext), new SimpleTypeInformationMapper()));
+		EntityInstantiators instantiators = new EntityInstantiators();
+		typeMapper.prewarm(mappingContext, instantiators);
+		typeGraphConverter = BenchmarkSupport.converter(mappingContext);
+		typeGraphConverter.setInstantiators(instantiators);
+		typeGraphConverter.setTypeMapper(typeMapper);
+
+		documents = new Document[BATCH];
+		for (int i = 0; i < BATCH; i++) {
+			Document document = new Document("_id", new ObjectId()).append("name", "Thing " + i);
+			switch (i % 3) {
+				case 0:
+					document.append("_class", "thing");
+					break;
+				case 1:
+					document.append("_class", "car").append("model", "Model " + i);
+					break;
+				default:
+					document.append("_class", "boat").append("length", i);
+			}
+			documents[i] = document;
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void typeGraphMapper(Blackhole blackhole) {
+		for (Document document: documents)
+			blackhole.consume(typeGraphConverter.read(Thing.class, document));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void defaultMapper(Blackhole blackhole) {
+		for (Document document: documents)
+			blackhole.consume(defaultConverter.read(Thing.class, document));
+	}
+
+}
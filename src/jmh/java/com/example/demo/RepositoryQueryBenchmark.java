@@ -0,0 +1,135 @@
+package com.example.demo;
+
+import com.example.demo.repository.CarRepository;
+import com.example.demo.repository.ThingRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.query.ConvertingParameterAccessor;
+import org.springframework.data.mongodb.repository.query.MongoParametersParameterAccessor;
+import org.springframework.data.mongodb.repository.query.MongoQueryMethod;
+import org.springframework.data.mongodb.repository.query.StringBasedMongoQuery;
+import org.springframework.data.repository.query.DefaultEvaluationContextProvider;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query creation of the derived and annotated query methods, with the precompiled templates and with the Spring Data
+ * implementations they replace ({@code *Parsed} benchmarks), plus the {@code @Query} expressions expansion done
+ * once per method at lookup.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RepositoryQueryBenchmark {
+
+	private InheritanceAwarePartTreeMongoQuery findCarsByIdNotNull;
+	private InheritanceAwarePartTreeMongoQuery findCarsByIdNotNullParsed;
+	private ConvertingParameterAccessor findCarsByIdNotNullAccessor;
+
+	private InheritanceAwarePartTreeMongoQuery findByName;
+	private InheritanceAwarePartTreeMongoQuery findByNameParsed;
+	private ConvertingParameterAccessor findByNameAccessor;
+
+	private MongoQueryMethod queryByNameMethod;
+	private MongoQueryMethod queryAnyByNameMethod;
+	private String queryAnyByNameQuery;
+	private InheritanceAwareStringBasedMongoQuery queryAnyByName;
+	private SpringStringBasedMongoQuery queryAnyByNameParsed;
+
+	@Setup
+	public void setup() throws Exception {
+		MongoOperations operations = BenchmarkSupport.operations(
+			BenchmarkSupport.converter(BenchmarkSupport.mappingContext()));
+
+		MongoQueryMethod method = BenchmarkSupport.queryMethod(CarRepository.class,
+			CarRepository.class.getMethod("findCarsByIdNotNull"), operations);
+		findCarsByIdNotNull = new InheritanceAwarePartTreeMongoQuery(method, operations, null, true);
+		findCarsByIdNotNullParsed = new InheritanceAwarePartTreeMongoQuery(method, operations, null, false);
+		findCarsByIdNotNullAccessor = accessor(method, operations);
+
+		method = BenchmarkSupport.queryMethod(CarRepository.class,
+			ThingRepository.class.getMethod("findByName", String.class), operations);
+		findByName = new InheritanceAwarePartTreeMongoQuery(method, operations, null, true);
+		findByNameParsed = new InheritanceAwarePartTreeMongoQuery(method, operations, null, false);
+		findByNameAccessor = accessor(method, operations, "A Car");
+
+		queryByNameMethod = BenchmarkSupport.queryMethod(ThingRepository.class,
+			ThingRepository.class.getMethod("queryByName", String.class), operations);
+
+		Method queryAnyByNameJavaMethod = ThingRepository.class.getMethod("queryAnyByName", String.class);
+		queryAnyByNameMethod = BenchmarkSupport.queryMethod(ThingRepository.class, queryAnyByNameJavaMethod, operations);
+		queryAnyByNameQuery = InheritanceAwareMongoRepositoryFactory.extractAnnotatedQuery(queryAnyByNameJavaMethod);
+		String query = InheritanceAwareMongoRepositoryFactory.enhanceQuery(queryAnyByNameQuery, queryAnyByNameMethod);
+		queryAnyByName = new InheritanceAwareStringBasedMongoQuery(query, null, queryAnyByNameMethod, operations,
+			new SpelExpressionParser(), DefaultEvaluationContextProvider.INSTANCE);
+		queryAnyByNameParsed = new SpringStringBasedMongoQuery(query, queryAnyByNameMethod, operations);
+	}
+
+	private static ConvertingParameterAccessor accessor(MongoQueryMethod method, MongoOperations operations,
+			Object... values) {
+		return new ConvertingParameterAccessor(operations.getConverter(),
+			new MongoParametersParameterAccessor(method, values));
+	}
+
+	@Benchmark
+	public Query findCarsByIdNotNull() {
+		return findCarsByIdNotNull.createQuery(findCarsByIdNotNullAccessor);
+	}
+
+	@Benchmark
+	public Query findCarsByIdNotNullParsed() {
+		return findCarsByIdNotNullParsed.createQuery(findCarsByIdNotNullAccessor);
+	}
+
+	@Benchmark
+	public Query findByName() {
+		return findByName.createQuery(findByNameAccessor);
+	}
+
+	@Benchmark
+	public Query findByNameParsed() {
+		return findByNameParsed.createQuery(findByNameAccessor);
+	}
+
+	@Benchmark
+	public Query queryAnyByName() {
+		return queryAnyByName.createQuery(findByNameAccessor);
+	}
+
+	@Benchmark
+	public Query queryAnyByNameParsed() {
+		return queryAnyByNameParsed.create(findByNameAccessor);
+	}
+
+	@Benchmark
+	public String enhanceQueryEntityName() {
+		return InheritanceAwareMongoRepositoryFactory.enhanceQuery("{'name': ?0, '_class': #{#entityName}}",
+			queryByNameMethod);
+	}
+
+	@Benchmark
+	public String enhanceQueryEntityAliases() {
+		return InheritanceAwareMongoRepositoryFactory.enhanceQuery(queryAnyByNameQuery, queryAnyByNameMethod);
+	}
+
+	/**
+	 * Exposes Spring Data query creation, which binds the parameters into the query string and parses it.
+	 */
+	private static class SpringStringBasedMongoQuery extends StringBasedMongoQuery {
+
+		SpringStringBasedMongoQuery(String query, MongoQueryMethod method, MongoOperations operations) {
+			super(query, method, operations, new SpelExpressionParser(), DefaultEvaluationContextProvider.INSTANCE);
+		}
+
+		Query create(ConvertingParameterAccessor accessor) {
+			return createQuery(accessor);
+		}
+
+	}
+
+}
@@ -0,0 +1,83 @@
+package com.example.demo;
+
+import org.bson.Document;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code _class} discriminator criteria: a plain equality for a single alias or a single {@code $in} for more of
+ * them, instead of {@code $or} of equalities planned by mongo branch by branch. The criteria document is built
+ * once and shared by all queries, so it's read-only.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+public class DiscriminatorCriteria extends Criteria {
+
+	public static final String KEY = "_class";
+
+	private final List<Object> values;
+	private final Document criteriaObject;
+
+	public DiscriminatorCriteria(List<?> values) {
+		super(KEY);
+		Assert.notEmpty(values, "Discriminator values must not be empty");
+
+		this.values = Collections.unmodifiableList(new ArrayList<>(values));
+		this.criteriaObject = new ReadOnlyDocument(KEY, this.values.size()==1
+			? this.values.get(0)
+			: new ReadOnlyDocument("$in", this.values));
+	}
+
+	/**
+	 * Discriminator values matched by this criteria.
+	 */
+	public List<Object> getValues() {
+		return values;
+	}
+
+	@Override
+	public Document getCriteriaObject() {
+		return criteriaObject;
+	}
+
+	private static class ReadOnlyDocument extends Document {
+
+		private static final long serialVersionUID = 1L;
+
+		ReadOnlyDocument(String key, Object value) {
+			super(key, value);
+		}
+
+		@Override
+		public Document append(String key, Object value) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Object put(String key, Object value) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Object remove(Object key) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void putAll(Map<? extends String, ?> map) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void clear() {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
+}
@@ -0,0 +1,223 @@
+package com.example.demo;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.query.parser.Part;
+import org.springframework.data.repository.query.parser.PartTree;
+import org.springframework.data.repository.query.parser.PartTree.OrPart;
+import org.springframework.lang.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Inspects derived ({@link PartTree}) query methods of all inheritance-aware repositories on startup and proposes
+ * compound indexes starting with {@code _class} discriminator, followed by the equality, sort and range fields of
+ * the query. Proposals are logged, or created if requested. Queries which can't use any index are reported as
+ * collection scans.
+ * <p>
+ * Like {@link org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver} this is only a startup
+ * helper, for production index management use your own migrations.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+public class InheritanceAwareIndexAdvisor implements ApplicationListener<ContextRefreshedEvent> {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(InheritanceAwareIndexAdvisor.class);
+
+	private static final Set<Part.Type> EQUALITY_TYPES = EnumSet.of(Part.Type.SIMPLE_PROPERTY, Part.Type.IN,
+		Part.Type.TRUE, Part.Type.FALSE, Part.Type.IS_NULL);
+
+	private static final Set<Part.Type> RANGE_TYPES = EnumSet.of(Part.Type.BETWEEN, Part.Type.LESS_THAN,
+		Part.Type.LESS_THAN_EQUAL, Part.Type.GREATER_THAN, Part.Type.GREATER_THAN_EQUAL, Part.Type.BEFORE,
+		Part.Type.AFTER, Part.Type.STARTING_WITH);
+
+	public enum Status {
+		/** There's already an index starting with the proposed keys */
+		COVERED,
+		/** The proposed index has just been created */
+		CREATED,
+		/** The proposed index doesn't exist, the query uses some other index */
+		PROPOSED,
+		/** Neither the proposed nor any other index can be used by the query */
+		COLLECTION_SCAN
+	}
+
+	public static class IndexAdvice {
+
+		private final Class<?> repositoryInterface;
+		private final String method;
+		private final String collection;
+		private final Document keys;
+		private final Status status;
+
+		public IndexAdvice(Class<?> repositoryInterface, String method, String collection, Document keys, Status status) {
+			this.repositoryInterface = repositoryInterface;
+			this.method = method;
+			this.collection = collection;
+			this.keys = keys;
+			this.status = status;
+		}
+
+		public Class<?> getRepositoryInterface() {
+			return repositoryInterface;
+		}
+
+		public String getMethod() {
+			return method;
+		}
+
+		public String getCollection() {
+			return collection;
+		}
+
+		public Document getKeys() {
+			return keys;
+		}
+
+		public Status getStatus() {
+			return status;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s.%s() on %s: %s %s", repositoryInterface.getSimpleName(), method, collection, status,
+				keys.toJson());
+		}
+
+	}
+
+	private final MongoOperations mongoOperations;
+	private final MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext;
+	private final boolean createIndexes;
+	private final MongoInheritanceSnapshot snapshot;
+	private final List<IndexAdvice> advices = Collections.synchronizedList(new ArrayList<>());
+
+	public InheritanceAwareIndexAdvisor(MongoOperations mongoOperations, boolean createIndexes) {
+		this(mongoOperations, createIndexes, null);
+	}
+
+	/**
+	 * @param snapshot of the application context, its types covering their collection don't need {@code _class}
+	 * prefixed indexes
+	 */
+	public InheritanceAwareIndexAdvisor(MongoOperations mongoOperations, boolean createIndexes,
+			@Nullable MongoInheritanceSnapshot snapshot) {
+		this.mongoOperations = mongoOperations;
+		this.mappingContext = mongoOperations.getConverter().getMappingContext();
+		this.createIndexes = createIndexes;
+		this.snapshot = snapshot!=null ? snapshot : MongoInheritanceSnapshot.EMPTY;
+	}
+
+	@Override
+	public void onApplicationEvent(ContextRefreshedEvent event) {
+		advices.clear();
+
+		for (InheritanceAwareMongoRepositoryFactoryBean<?, ?, ?> factory: event.getApplicationContext()
+				.getBeansOfType(InheritanceAwareMongoRepositoryFactoryBean.class).values()) {
+			RepositoryInformation information = factory.getRepositoryInformation();
+			MongoPersistentEntity<?> entity = (MongoPersistentEntity<?>) factory.getPersistentEntity();
+
+			for (Method method: information.getQueryMethods()) {
+				if (!AnnotatedElementUtils.hasAnnotation(method, Query.class)) {
+					IndexAdvice advice = advise(information, entity, method);
+					if (advice!=null) {
+						advices.add(advice);
+						LOGGER.info("Index advice for {}", advice);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * All advices from the last context refresh.
+	 */
+	public List<IndexAdvice> getAdvices() {
+		return Collections.unmodifiableList(new ArrayList<>(advices));
+	}
+
+	/**
+	 * Advices for queries which can't use any index.
+	 */
+	public List<IndexAdvice> getCollectionScans() {
+		return getAdvices().stream()
+			.filter(it -> it.getStatus()==Status.COLLECTION_SCAN)
+			.collect(Collectors.toList());
+	}
+
+	private IndexAdvice advise(RepositoryInformation information, MongoPersistentEntity<?> entity, Method method) {
+		PartTree tree;
+		try {
+			tree = new PartTree(method.getName(), information.getDomainType());
+		} catch (RuntimeException e) {
+			LOGGER.debug("Skipping {}.{}(), not a derived query: {}", information.getRepositoryInterface().getSimpleName(),
+				method.getName(), e.getMessage());
+			return null;
+		}
+
+		Document keys = new Document();
+		if (snapshot.getCriteria(information.getDomainType())!=null)
+			keys.put(DiscriminatorCriteria.KEY, 1);
+
+		// equality, sort, range - and only for the first or-part, the others will need their own indexes anyway
+		Iterator<OrPart> orParts = tree.iterator();
+		List<Part> parts = orParts.hasNext() ? orParts.next().stream().collect(Collectors.toList()) : Collections.emptyList();
+
+		parts.stream()
+			.filter(it -> EQUALITY_TYPES.contains(it.getType()))
+			.forEach(it -> keys.putIfAbsent(fieldName(it), 1));
+		for (Sort.Order order: tree.getSort())
+			keys.putIfAbsent(mappingContext.getPersistentPropertyPath(order.getProperty(), information.getDomainType())
+				.toDotPath(MongoPersistentProperty::getFieldName), order.isAscending() ? 1 : -1);
+		parts.stream()
+			.filter(it -> RANGE_TYPES.contains(it.getType()))
+			.forEach(it -> keys.putIfAbsent(fieldName(it), 1));
+
+		if (keys.isEmpty())
+			return new IndexAdvice(information.getRepositoryInterface(), method.getName(), entity.getCollection(), keys,
+				Status.COLLECTION_SCAN);
+
+		IndexOperations indexOperations = mongoOperations.indexOps(entity.getCollection());
+		List<List<String>> indexes = indexOperations.getIndexInfo().stream()
+			.map(it -> it.getIndexFields().stream().map(IndexField::getKey).collect(Collectors.toList()))
+			.collect(Collectors.toList());
+		List<String> proposed = new ArrayList<>(keys.keySet());
+
+		Status status;
+		if (indexes.stream().anyMatch(it -> it.size() >= proposed.size() && it.subList(0, proposed.size()).equals(proposed))) {
+			status = Status.COVERED;
+		} else if (createIndexes) {
+			Index index = new Index();
+			keys.forEach((key, direction) -> index.on(key, ((Integer) direction) > 0 ? Sort.Direction.ASC : Sort.Direction.DESC));
+			indexOperations.ensureIndex(index);
+			status = Status.CREATED;
+		} else if (indexes.stream().anyMatch(it -> !it.isEmpty() && proposed.contains(it.get(0)))) {
+			status = Status.PROPOSED;
+		} else {
+			status = Status.COLLECTION_SCAN;
+		}
+
+		return new IndexAdvice(information.getRepositoryInterface(), method.getName(), entity.getCollection(), keys, status);
+	}
+
+	private String fieldName(Part part) {
+		return mappingContext.getPersistentPropertyPath(part.getProperty()).toDotPath(MongoPersistentProperty::getFieldName);
+	}
+
+}
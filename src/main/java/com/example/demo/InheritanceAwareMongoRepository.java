@@ -0,0 +1,107 @@
+package com.example.demo;
+
+import org.bson.Document;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.repository.NoRepositoryBean;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.lang.Nullable;
+
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * {@link MongoRepository} with operations specific to {@link InheritanceAwareSimpleMongoRepository}.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+@NoRepositoryBean
+public interface InheritanceAwareMongoRepository<T, ID> extends MongoRepository<T, ID> {
+
+	/**
+	 * Deletes given entities with chunked {@code {_id: {$in: [...]}}} removes scoped to the repository type.
+	 *
+	 * @return number of deleted documents
+	 */
+	long deleteInBatch(Iterable<? extends T> entities);
+
+	/**
+	 * Exact count of the repository type documents, counted document by document even if {@link #count()} would use
+	 * the collection metadata.
+	 */
+	long countExactly();
+
+	/**
+	 * Counts of the repository type documents per concrete subtype, with a single {@code $group} on {@code _class}.
+	 */
+	Map<Class<? extends T>, Long> countBySubtype();
+
+	/**
+	 * @param filter additional criteria, besides the discriminator
+	 * @param hint keys of the index to use
+	 * @see #countBySubtype()
+	 */
+	Map<Class<? extends T>, Long> countBySubtype(@Nullable Criteria filter, @Nullable Document hint);
+
+	/**
+	 * Streams all entities of the repository type from a driver cursor, without loading them into memory at once. The
+	 * stream has to be closed to release the cursor if not fully consumed.
+	 */
+	Stream<T> streamAll();
+
+	/**
+	 * @see #streamAll()
+	 */
+	Stream<T> streamAll(Sort sort);
+
+	/**
+	 * @see #streamAll()
+	 */
+	Stream<T> streamAllById(Iterable<ID> ids);
+
+	/**
+	 * @see #streamAll()
+	 */
+	<S extends T> Stream<S> streamAll(Example<S> example);
+
+	/**
+	 * @see #streamAll()
+	 */
+	<S extends T> Stream<S> streamAll(Example<S> example, Sort sort);
+
+	/**
+	 * Iterates all entities of the repository type over a driver cursor. The iterator has to be closed to release the
+	 * cursor if not fully consumed.
+	 */
+	CloseableIterator<T> iterateAll(Sort sort);
+
+	/**
+	 * Keyset (seek) pagination of the repository type, with constant cost of each page regardless of its depth. The
+	 * documents are ordered by the sort property (optional, null and missing values first in ascending order) and
+	 * {@code _id} in the same direction, and each next slice starts right after the last document of the previous one,
+	 * instead of skipping documents.
+	 *
+	 * @param sort {@link Sort#unsorted()} for scrolling by {@code _id} or single property sort
+	 * @param token {@code null} for the first slice or {@link KeysetSlice#getNextToken()} of the previous one (the same
+	 * sort has to be used)
+	 * @throws IllegalArgumentException if the token is not a continuation token, eg. it contains query operators
+	 * @see #ensureKeysetIndex(Sort)
+	 */
+	KeysetSlice<T> scroll(Sort sort, int size, @Nullable String token);
+
+	/**
+	 * Ensures {@code {_class, sortKey, _id}} index supporting {@link #scroll} with the given sort.
+	 */
+	void ensureKeysetIndex(Sort sort);
+
+	/**
+	 * Loads the fields left out by the {@link InheritanceAwareProjection#listView()} reads into the entity. Does
+	 * nothing if the repository doesn't use the list view projection.
+	 *
+	 * @return the same entity
+	 */
+	<S extends T> S fetchExcluded(S entity);
+
+}
@@ -1,5 +1,7 @@
 package com.example.demo;
 
+import org.bson.Document;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.annotation.AnnotatedElementUtils;
 import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.data.annotation.TypeAlias;
@@ -9,10 +11,10 @@ import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
 import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.query.MongoQueryMethod;
-import org.springframework.data.mongodb.repository.query.StringBasedMongoQuery;
 import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
 import org.springframework.data.projection.ProjectionFactory;
 import org.springframework.data.repository.core.NamedQueries;
+import org.springframework.data.repository.core.RepositoryInformation;
 import org.springframework.data.repository.core.RepositoryMetadata;
 import org.springframework.data.repository.query.EvaluationContextProvider;
 import org.springframework.data.repository.query.QueryLookupStrategy;
@@ -23,13 +25,24 @@ import org.springframework.lang.Nullable;
 import org.springframework.util.StringUtils;
 
 import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 
 public class InheritanceAwareMongoRepositoryFactory extends MongoRepositoryFactory {
 
     private static final SpelExpressionParser EXPRESSION_PARSER = new SpelExpressionParser();
+    private static final String ENTITY_NAME = "#{#entityName}";
+    private static final String ENTITY_ALIASES = "#{#entityAliases}";
 
     private final MongoOperations operations;
+    private final InheritanceAwareRepositorySettings settings;
+    private @Nullable ApplicationEventPublisher eventPublisher;
+    private @Nullable MongoTypeCounters counters;
+    private @Nullable MongoEntityCache entityCache;
+    private @Nullable ExecutorService pagingExecutor;
+    private MongoInheritanceSnapshot snapshot = MongoInheritanceSnapshot.EMPTY;
 
     /**
      * Creates a new {@link MongoRepositoryFactory} with the given {@link MongoOperations}.
@@ -37,8 +50,97 @@ public class InheritanceAwareMongoRepositoryFactory extends MongoRepositoryFacto
      * @param mongoOperations must not be {@literal null}.
      */
     public InheritanceAwareMongoRepositoryFactory(MongoOperations mongoOperations) {
+        this(mongoOperations, new InheritanceAwareRepositorySettings());
+    }
+
+    public InheritanceAwareMongoRepositoryFactory(MongoOperations mongoOperations,
+            InheritanceAwareRepositorySettings settings) {
         super(mongoOperations);
         this.operations = mongoOperations;
+        this.settings = settings;
+    }
+
+    /**
+     * Snapshot of the application context giving the discriminator criteria of the created repositories and queries,
+     * without it they're built by {@link MongoClassInheritanceScanner}.
+     */
+    public void setSnapshot(@Nullable MongoInheritanceSnapshot snapshot) {
+        this.snapshot = snapshot!=null ? snapshot : MongoInheritanceSnapshot.EMPTY;
+    }
+
+    /**
+     * Publisher of the mapping events for the bulk operations of the created repositories.
+     */
+    public void setEventPublisher(@Nullable ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Type counters maintained by the created repositories, if enabled.
+     */
+    public void setCounters(@Nullable MongoTypeCounters counters) {
+        this.counters = counters;
+    }
+
+    /**
+     * Entity cache shared by the created repositories, if enabled.
+     */
+    public void setEntityCache(@Nullable MongoEntityCache entityCache) {
+        this.entityCache = entityCache;
+    }
+
+    /**
+     * Executor of the counts of {@link InheritanceAwarePaging.Mode#CONCURRENT} paged reads of the created repositories.
+     */
+    public void setPagingExecutor(@Nullable ExecutorService pagingExecutor) {
+        this.pagingExecutor = pagingExecutor;
+    }
+
+    /**
+     * Instruments the created repositories with the metrics, if enabled.
+     */
+    public void setMetrics(@Nullable MongoRepositoryMetrics metrics) {
+        if (metrics!=null)
+            addRepositoryProxyPostProcessor((factory, information) -> factory.addAdvice(metrics.createInterceptor(
+                information.getRepositoryInterface(), information.getDomainType(),
+                getEntityInformation(information.getDomainType()).getCollectionName(),
+                snapshot.getCriteria(information.getDomainType()))));
+    }
+
+    /**
+     * Exposes the called methods of the created repositories to the explain sampler, if enabled.
+     */
+    public void setExplainSampler(@Nullable MongoExplainSampler explainSampler) {
+        if (explainSampler!=null)
+            addRepositoryProxyPostProcessor((factory, information) -> factory.addAdvice(
+                explainSampler.createInterceptor(information.getRepositoryInterface())));
+    }
+
+    /**
+     * Passes {@link MongoInheritanceSnapshot}, {@link InheritanceAwareRepositorySettings}, event publisher, type
+     * counters, entity cache,
+     * {@link InheritanceAwarePaging} mode and executor and {@link InheritanceAwareProjection} to created repositories.
+     */
+    @Override
+    protected Object getTargetRepository(RepositoryInformation information) {
+        Object repository = super.getTargetRepository(information);
+        if (repository instanceof InheritanceAwareSimpleMongoRepository) {
+            InheritanceAwareSimpleMongoRepository<?, ?> inheritanceAwareRepository =
+                (InheritanceAwareSimpleMongoRepository<?, ?>) repository;
+            inheritanceAwareRepository.setSnapshot(snapshot);
+            inheritanceAwareRepository.setSettings(settings);
+            inheritanceAwareRepository.setEventPublisher(eventPublisher);
+            inheritanceAwareRepository.setCounters(counters);
+            inheritanceAwareRepository.setEntityCache(entityCache);
+            inheritanceAwareRepository.setPagingExecutor(pagingExecutor);
+
+            InheritanceAwarePaging paging = AnnotatedElementUtils.findMergedAnnotation(
+                information.getRepositoryInterface(), InheritanceAwarePaging.class);
+            inheritanceAwareRepository.setPagingMode(paging!=null ? paging.value() : settings.getPagingMode());
+            inheritanceAwareRepository.setProjection(createProjection(information.getRepositoryInterface(),
+                information.getDomainType(), operations));
+        }
+        return repository;
     }
 
     /**
@@ -48,7 +150,20 @@ public class InheritanceAwareMongoRepositoryFactory extends MongoRepositoryFacto
     protected Optional<QueryLookupStrategy> getQueryLookupStrategy(@Nullable Key key,
             EvaluationContextProvider evaluationContextProvider) {
         return Optional.of(new MongoQueryLookupStrategy(operations, evaluationContextProvider,
-                operations.getConverter().getMappingContext()));
+                operations.getConverter().getMappingContext(), snapshot));
+    }
+
+    /**
+     * Projection of the repository annotated with {@link InheritanceAwareProjection} or {@code null}.
+     */
+    @Nullable
+    static MongoTypeProjection createProjection(Class<?> repositoryInterface, Class<?> domainType,
+            MongoOperations operations) {
+        InheritanceAwareProjection annotation = AnnotatedElementUtils.findMergedAnnotation(repositoryInterface,
+            InheritanceAwareProjection.class);
+        return annotation!=null
+            ? MongoTypeProjection.of(domainType, operations.getConverter().getMappingContext(), annotation.listView())
+            : null;
     }
 
     /**
@@ -60,13 +175,16 @@ public class InheritanceAwareMongoRepositoryFactory extends MongoRepositoryFacto
         private final MongoOperations operations;
         private final EvaluationContextProvider evaluationContextProvider;
         MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext;
+        private final MongoInheritanceSnapshot snapshot;
 
         public MongoQueryLookupStrategy(MongoOperations operations, EvaluationContextProvider evaluationContextProvider,
-                MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext) {
+                MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext,
+                MongoInheritanceSnapshot snapshot) {
 
             this.operations = operations;
             this.evaluationContextProvider = evaluationContextProvider;
             this.mappingContext = mappingContext;
+            this.snapshot = snapshot;
         }
 
         @Override
@@ -78,31 +196,57 @@ public class InheritanceAwareMongoRepositoryFactory extends MongoRepositoryFacto
 
             if (namedQueries.hasQuery(namedQueryName)) {
                 String namedQuery = namedQueries.getQuery(namedQueryName);
-				return new StringBasedMongoQuery(
-					enhanceQuery(namedQuery, queryMethod),
+				return new InheritanceAwareStringBasedMongoQuery(
+					enhanceQuery(namedQuery, queryMethod), extractFieldSpec(method),
 					queryMethod, operations, EXPRESSION_PARSER, evaluationContextProvider);
             } else if (queryMethod.hasAnnotatedQuery()) {
-				return new StringBasedMongoQuery(
-					enhanceQuery(extractAnnotatedQuery(method), queryMethod),
+				return new InheritanceAwareStringBasedMongoQuery(
+					enhanceQuery(extractAnnotatedQuery(method), queryMethod), extractFieldSpec(method),
 					queryMethod, operations, EXPRESSION_PARSER, evaluationContextProvider);
             } else {
-                return new InheritanceAwarePartTreeMongoQuery(queryMethod, operations);
+                return new InheritanceAwarePartTreeMongoQuery(queryMethod, operations,
+                    createProjection(metadata.getRepositoryInterface(), metadata.getDomainType(), operations),
+                    !AnnotatedElementUtils.hasAnnotation(method, Query.class), snapshot);
             }
         }
     }
 
 	/**
-	 * Injects {@link TypeAlias} into mongo @{@link Query}'s {@code #{#entityName}} expression.
+	 * Injects {@link TypeAlias} into mongo @{@link Query}'s {@code #{#entityName}} expression, and the aliases of the
+	 * type and all its subtypes into {@code #{#entityAliases}} expression (as {@code $in}, if more of them). With type
+	 * codes enabled the type codes are injected instead (together with the legacy aliases, if accepted).
 	 */
-	private static String enhanceQuery(String query, MongoQueryMethod method) {
-		String typeAlias = MongoClassInheritanceScanner.getInstance().findAlias(method.getEntityInformation().getJavaType());
+	static String enhanceQuery(String query, MongoQueryMethod method) {
+		MongoClassInheritanceScanner scanner = MongoClassInheritanceScanner.getInstance();
+		Class<?> type = method.getEntityInformation().getJavaType();
 
-		if (typeAlias!=null)
-			return query.replaceAll("\\#\\{\\#entityName\\}", "'" + typeAlias + "'");
+		String typeAlias = scanner.findAlias(type);
+		if (typeAlias!=null && query.contains(ENTITY_NAME))
+			query = query.replace(ENTITY_NAME,
+				toJsonValue(scanner.getDiscriminatorValues(Collections.singletonList(typeAlias))));
+
+		List<String> aliases = scanner.getAliases(type);
+		if (!aliases.isEmpty() && query.contains(ENTITY_ALIASES))
+			query = query.replace(ENTITY_ALIASES, toJsonValue(scanner.getDiscriminatorValues(aliases)));
 
 		return query;
 	}
 
+	private static String toJsonValue(List<Object> values) {
+		if (values.size()==1)
+			return values.get(0) instanceof String ? "'" + values.get(0) + "'" : String.valueOf(values.get(0));
+
+		return new Document("$in", values).toJson();
+	}
+
+	@Nullable
+	static String extractFieldSpec(Method method) {
+		return Optional.ofNullable(AnnotatedElementUtils.findMergedAnnotation(method, Query.class))
+			.map(Query::fields)
+			.filter(StringUtils::hasText)
+			.orElse(null);
+	}
+
 	protected static String extractAnnotatedQuery(Method method) {
 		return Optional.ofNullable(AnnotatedElementUtils.findMergedAnnotation(method, Query.class))
 			.map(AnnotationUtils::getValue)
@@ -1,6 +1,10 @@
 package com.example.demo;
 
 import java.io.Serializable;
+import java.util.concurrent.ExecutorService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.data.mongodb.repository.support.MongoRepositoryFactoryBean;
 import org.springframework.data.repository.Repository;
@@ -10,14 +14,75 @@ import org.springframework.data.repository.query.QueryLookupStrategy.Key;
 public class InheritanceAwareMongoRepositoryFactoryBean<T extends Repository<S, ID>, S, ID extends Serializable> extends
         MongoRepositoryFactoryBean<T, S, ID> {
 
+    private InheritanceAwareRepositorySettings settings = new InheritanceAwareRepositorySettings();
+    private ApplicationEventPublisher eventPublisher;
+    private MongoTypeCounters counters;
+    private MongoEntityCache entityCache;
+    private MongoInheritanceWarmup warmup;
+    private ExecutorService pagingExecutor;
+    private MongoRepositoryMetrics metrics;
+    private MongoExplainSampler explainSampler;
+
     public InheritanceAwareMongoRepositoryFactoryBean(Class<? extends T> repositoryInterface) {
         super(repositoryInterface);
     }
 
+    @Autowired(required = false)
+    public void setSettings(InheritanceAwareRepositorySettings settings) {
+        this.settings = settings;
+    }
+
+    @Autowired(required = false)
+    public void setCounters(MongoTypeCounters counters) {
+        this.counters = counters;
+    }
+
+    @Autowired(required = false)
+    public void setEntityCache(MongoEntityCache entityCache) {
+        this.entityCache = entityCache;
+    }
+
+    @Autowired(required = false)
+    @Qualifier(MongoConfigurer.PAGING_EXECUTOR)
+    public void setPagingExecutor(ExecutorService pagingExecutor) {
+        this.pagingExecutor = pagingExecutor;
+    }
+
+    @Autowired(required = false)
+    public void setMetrics(MongoRepositoryMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Autowired(required = false)
+    public void setExplainSampler(MongoExplainSampler explainSampler) {
+        this.explainSampler = explainSampler;
+    }
+
+    /**
+     * The repositories take their discriminator criteria from the warmed up snapshot.
+     */
+    @Autowired(required = false)
+    public void setWarmup(MongoInheritanceWarmup warmup) {
+        this.warmup = warmup;
+    }
+
+    @Override
+    public void setApplicationEventPublisher(ApplicationEventPublisher publisher) {
+        super.setApplicationEventPublisher(publisher);
+        this.eventPublisher = publisher;
+    }
 
     @Override
     protected RepositoryFactorySupport getFactoryInstance(MongoOperations operations) {
-        return new InheritanceAwareMongoRepositoryFactory(operations);
+        InheritanceAwareMongoRepositoryFactory factory = new InheritanceAwareMongoRepositoryFactory(operations, settings);
+        factory.setEventPublisher(eventPublisher);
+        factory.setCounters(counters);
+        factory.setSnapshot(warmup!=null ? warmup.getSnapshot() : null);
+        factory.setEntityCache(entityCache);
+        factory.setPagingExecutor(pagingExecutor);
+        factory.setMetrics(metrics);
+        factory.setExplainSampler(explainSampler);
+        return factory;
     }
 
 }
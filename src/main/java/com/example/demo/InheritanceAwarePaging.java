@@ -0,0 +1,33 @@
+package com.example.demo;
+
+import java.lang.annotation.*;
+
+/**
+ * Selects how {@link InheritanceAwareSimpleMongoRepository} executes paged reads ({@code findAll(Pageable)} and
+ * {@code findAll(Example, Pageable)}) of the annotated repository. Repositories without the annotation use
+ * {@code inheritance.mongo.repository.paging-mode} property.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface InheritanceAwarePaging {
+
+	Mode value();
+
+	enum Mode {
+		/** Count and then find, two roundtrips */
+		SEQUENTIAL,
+		/**
+		 * Single aggregation with {@code $match} on the discriminator and {@code $facet} for the content and total. The
+		 * whole page is returned in a single {@code $facet} output document, limited to 16MB like any BSON document,
+		 * so larger pages are read again with {@link #SEQUENTIAL} queries.
+		 */
+		FACET,
+		/** Count and find issued in parallel, two roundtrips but the latency of the slower one */
+		CONCURRENT
+	}
+
+}
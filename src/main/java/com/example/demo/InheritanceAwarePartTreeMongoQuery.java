@@ -1,38 +1,190 @@
 package com.example.demo;
 
+import org.bson.Document;
+import org.springframework.data.mapping.context.MappingContext;
 import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.BasicQuery;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.repository.query.ConvertingParameterAccessor;
 import org.springframework.data.mongodb.repository.query.MongoQueryMethod;
 import org.springframework.data.mongodb.repository.query.PartTreeMongoQuery;
+import org.springframework.data.repository.query.parser.Part;
+import org.springframework.data.repository.query.parser.PartTree;
+import org.springframework.lang.Nullable;
+
+import java.util.*;
 
 public class InheritanceAwarePartTreeMongoQuery extends PartTreeMongoQuery {
 
     private final Criteria inheritanceCriteria;
+    private final @Nullable MongoTypeProjection projection;
+    private final @Nullable QueryTemplate template;
 
     public InheritanceAwarePartTreeMongoQuery(MongoQueryMethod method, MongoOperations mongoOperations) {
+        this(method, mongoOperations, null);
+    }
+
+    /**
+     * @param projection applied to the queries without their own fields (ie. not returning DTO or interface projections)
+     */
+    public InheritanceAwarePartTreeMongoQuery(MongoQueryMethod method, MongoOperations mongoOperations,
+            @Nullable MongoTypeProjection projection) {
+        this(method, mongoOperations, projection, false);
+    }
+
+    /**
+     * @param compileTemplate whether simple equality queries can be compiled into a {@link QueryTemplate}, has to be
+     * {@code false} for methods with {@code @Query} field specification
+     */
+    public InheritanceAwarePartTreeMongoQuery(MongoQueryMethod method, MongoOperations mongoOperations,
+            @Nullable MongoTypeProjection projection, boolean compileTemplate) {
+        this(method, mongoOperations, projection, compileTemplate, MongoInheritanceSnapshot.EMPTY);
+    }
+
+    /**
+     * @param snapshot of the application context, giving the discriminator criteria
+     */
+    public InheritanceAwarePartTreeMongoQuery(MongoQueryMethod method, MongoOperations mongoOperations,
+            @Nullable MongoTypeProjection projection, boolean compileTemplate, MongoInheritanceSnapshot snapshot) {
         super(method, mongoOperations);
+        this.projection = projection;
 
-		inheritanceCriteria = MongoClassInheritanceScanner.getInstance().createInheritanceCritera(
-			method.getEntityInformation().getJavaType());
+		// derived deletes are always scoped, also for the types covering their whole collection
+		inheritanceCriteria = getTree().isDelete()
+			? snapshot.getDeleteCriteria(method.getEntityInformation().getJavaType())
+			: snapshot.getCriteria(method.getEntityInformation().getJavaType());
+		template = compileTemplate
+			? QueryTemplate.compile(method, getTree(), inheritanceCriteria, mongoOperations.getConverter().getMappingContext())
+			: null;
     }
 
     @Override
     protected Query createQuery(ConvertingParameterAccessor accessor) {
-        Query query = super.createQuery(accessor);
-        if (inheritanceCriteria != null) {
-            query.addCriteria(inheritanceCriteria);
+        Query query;
+        if (template != null) {
+            query = new BasicQuery(template.bind(accessor.iterator())).with(getTree().getSort().and(accessor.getSort()));
+            if (getTree().isLimiting()) {
+                query.limit(getTree().getMaxResults());
+            }
+        } else {
+            query = super.createQuery(accessor);
+            if (inheritanceCriteria != null) {
+                query.addCriteria(inheritanceCriteria);
+            }
+        }
+        if (projection != null) {
+            projection.applyTo(query);
         }
         return query;
     }
 
     @Override
     protected Query createCountQuery(ConvertingParameterAccessor accessor) {
+        if (template != null) {
+            return new BasicQuery(template.bind(accessor.iterator()));
+        }
+
         Query query = super.createCountQuery(accessor);
         if (inheritanceCriteria != null) {
             query.addCriteria(inheritanceCriteria);
         }
         return query;
     }
+
+	/**
+	 * Query document of a {@link PartTree} consisting only of equality parts, with the discriminator merged in, built
+	 * once per query method. Each call just copies it and binds the parameters, instead of creating the criteria
+	 * from the tree and merging the discriminator again. The result is the same as the one of
+	 * {@link org.springframework.data.mongodb.repository.query.MongoQueryCreator}.
+	 */
+	private static class QueryTemplate {
+
+		private static final Set<Part.Type> TYPES = EnumSet.of(Part.Type.SIMPLE_PROPERTY,
+			Part.Type.NEGATING_SIMPLE_PROPERTY, Part.Type.IS_NULL, Part.Type.IS_NOT_NULL, Part.Type.TRUE, Part.Type.FALSE);
+
+		private final Document document;
+		private final String[] keys;
+		private final boolean[] negated;
+
+		private QueryTemplate(Document document, List<String> keys, List<Boolean> negated) {
+			this.document = document;
+			this.keys = keys.toArray(new String[0]);
+			this.negated = new boolean[negated.size()];
+			for (int i = 0; i < this.negated.length; i++)
+				this.negated[i] = negated.get(i);
+		}
+
+		/**
+		 * Template of the tree or {@code null} if it has other than equality parts, or the method needs any other
+		 * processing than binding the values.
+		 */
+		@Nullable
+		static QueryTemplate compile(MongoQueryMethod method, PartTree tree, @Nullable Criteria inheritanceCriteria,
+				MappingContext<?, MongoPersistentProperty> mappingContext) {
+			Iterator<PartTree.OrPart> orParts = tree.iterator();
+			if (!orParts.hasNext() || tree.isDistinct() || method.isGeoNearQuery()
+					|| method.getParameters().hasFullTextParameter() || method.getParameters().hasDynamicProjection()
+					|| method.getResultProcessor().getReturnedType().isProjecting())
+				return null;
+
+			PartTree.OrPart orPart = orParts.next();
+			if (orParts.hasNext())
+				return null;
+
+			Document document = new Document();
+			List<String> keys = new ArrayList<>();
+			List<Boolean> negated = new ArrayList<>();
+
+			for (Part part: orPart) {
+				if (!TYPES.contains(part.getType()) || part.shouldIgnoreCase()!=Part.IgnoreCaseType.NEVER)
+					return null;
+
+				String key = mappingContext.getPersistentPropertyPath(part.getProperty()).toDotPath();
+				if (document.containsKey(key))
+					return null;
+
+				switch (part.getType()) {
+					case SIMPLE_PROPERTY:
+					case NEGATING_SIMPLE_PROPERTY:
+						document.put(key, null);
+						keys.add(key);
+						negated.add(part.getType()==Part.Type.NEGATING_SIMPLE_PROPERTY);
+						break;
+					case IS_NULL:
+						document.put(key, null);
+						break;
+					case IS_NOT_NULL:
+						document.put(key, new Document("$ne", null));
+						break;
+					default:
+						document.put(key, part.getType()==Part.Type.TRUE);
+				}
+			}
+
+			if (inheritanceCriteria!=null) {
+				Document discriminator = inheritanceCriteria.getCriteriaObject();
+				if (discriminator.keySet().stream().anyMatch(document::containsKey))
+					return null;
+				document.putAll(discriminator);
+			}
+
+			return new QueryTemplate(document, keys, negated);
+		}
+
+		/**
+		 * @param values converted parameter values, in order of the parts
+		 */
+		Document bind(Iterator<Object> values) {
+			Document bound = new Document(document);
+			for (int i = 0; i < keys.length; i++) {
+				Object value = values.next();
+				bound.put(keys[i], negated[i] ? new Document("$ne", value) : value);
+			}
+			return bound;
+		}
+
+	}
+
 }
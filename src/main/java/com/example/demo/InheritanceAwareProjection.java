@@ -0,0 +1,36 @@
+package com.example.demo;
+
+import java.lang.annotation.*;
+
+/**
+ * Enables field projection of the multi-document reads (everything but {@code findById} and {@code findOne}) of the
+ * annotated repository. The projection is the union of the fields mapped by the repository type and all its
+ * subtypes (see {@link MongoTypeProjection}), so the fields of the other types stored in the same collection and
+ * the fields not mapped at all aren't sent over the wire and decoded.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface InheritanceAwareProjection {
+
+	/**
+	 * Whether the fields annotated with {@link ListViewExcluded} should also be left out. The entities read this way
+	 * have these fields {@code null} and they can be loaded later with
+	 * {@link InheritanceAwareMongoRepository#fetchExcluded(Object)}. Don't save such entities without fetching the
+	 * excluded fields first, or the fields will be overwritten with {@code null}.
+	 */
+	boolean listView() default false;
+
+	/**
+	 * Marks large fields left out from the list view reads.
+	 */
+	@Documented
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.FIELD)
+	@interface ListViewExcluded {
+	}
+
+}
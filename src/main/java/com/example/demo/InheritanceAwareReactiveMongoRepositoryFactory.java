@@ -0,0 +1,145 @@
+package com.example.demo;
+
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.repository.query.ReactiveMongoQueryMethod;
+import org.springframework.data.mongodb.repository.query.ReactiveStringBasedMongoQuery;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.repository.core.NamedQueries;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.core.RepositoryMetadata;
+import org.springframework.data.repository.query.EvaluationContextProvider;
+import org.springframework.data.repository.query.QueryLookupStrategy;
+import org.springframework.data.repository.query.QueryLookupStrategy.Key;
+import org.springframework.data.repository.query.RepositoryQuery;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.lang.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.Optional;
+
+import static com.example.demo.InheritanceAwareMongoRepositoryFactory.enhanceQuery;
+import static com.example.demo.InheritanceAwareMongoRepositoryFactory.extractAnnotatedQuery;
+
+/**
+ * Reactive counterpart of {@link InheritanceAwareMongoRepositoryFactory}.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+public class InheritanceAwareReactiveMongoRepositoryFactory extends ReactiveMongoRepositoryFactory {
+
+    private static final SpelExpressionParser EXPRESSION_PARSER = new SpelExpressionParser();
+
+    private final ReactiveMongoOperations operations;
+    private @Nullable MongoEntityCache entityCache;
+    private @Nullable MongoTypeCounters counters;
+    private MongoInheritanceSnapshot snapshot = MongoInheritanceSnapshot.EMPTY;
+
+    /**
+     * Creates a new {@link ReactiveMongoRepositoryFactory} with the given {@link ReactiveMongoOperations}.
+     *
+     * @param mongoOperations must not be {@literal null}.
+     */
+    public InheritanceAwareReactiveMongoRepositoryFactory(ReactiveMongoOperations mongoOperations) {
+        super(mongoOperations);
+        this.operations = mongoOperations;
+    }
+
+    /**
+     * Snapshot of the application context giving the discriminator criteria of the created repositories and queries,
+     * like in {@link InheritanceAwareMongoRepositoryFactory#setSnapshot}.
+     */
+    public void setSnapshot(@Nullable MongoInheritanceSnapshot snapshot) {
+        this.snapshot = snapshot!=null ? snapshot : MongoInheritanceSnapshot.EMPTY;
+    }
+
+    /**
+     * Entity cache evicted by the created repositories, if enabled.
+     */
+    public void setEntityCache(@Nullable MongoEntityCache entityCache) {
+        this.entityCache = entityCache;
+    }
+
+    /**
+     * Type counters maintained by the created repositories, if enabled.
+     */
+    public void setCounters(@Nullable MongoTypeCounters counters) {
+        this.counters = counters;
+    }
+
+    /**
+     * Passes the snapshot, entity cache and type counters to created repositories.
+     */
+    @Override
+    protected Object getTargetRepository(RepositoryInformation information) {
+        Object repository = super.getTargetRepository(information);
+        if (repository instanceof InheritanceAwareSimpleReactiveMongoRepository) {
+            InheritanceAwareSimpleReactiveMongoRepository<?, ?> inheritanceAwareRepository =
+                (InheritanceAwareSimpleReactiveMongoRepository<?, ?>) repository;
+            inheritanceAwareRepository.setSnapshot(snapshot);
+            inheritanceAwareRepository.setEntityCache(entityCache);
+            inheritanceAwareRepository.setCounters(counters);
+        }
+        return repository;
+    }
+
+    /**
+     * Switch to our MongoQueryLookupStrategy.
+     */
+    @Override
+    protected Optional<QueryLookupStrategy> getQueryLookupStrategy(@Nullable Key key,
+            EvaluationContextProvider evaluationContextProvider) {
+        return Optional.of(new MongoQueryLookupStrategy(operations, evaluationContextProvider,
+                operations.getConverter().getMappingContext(), snapshot));
+    }
+
+    /**
+     * Taken from the Spring Data for MongoDB source code and modified to return
+     * InheritanceAwareReactivePartTreeMongoQuery instead of ReactivePartTreeMongoQuery, like in
+     * {@link InheritanceAwareMongoRepositoryFactory}.
+     */
+    private static class MongoQueryLookupStrategy implements QueryLookupStrategy {
+
+        private final ReactiveMongoOperations operations;
+        private final EvaluationContextProvider evaluationContextProvider;
+        MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext;
+        private final MongoInheritanceSnapshot snapshot;
+
+        public MongoQueryLookupStrategy(ReactiveMongoOperations operations,
+                EvaluationContextProvider evaluationContextProvider,
+                MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext,
+                MongoInheritanceSnapshot snapshot) {
+
+            this.operations = operations;
+            this.evaluationContextProvider = evaluationContextProvider;
+            this.mappingContext = mappingContext;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public RepositoryQuery resolveQuery(Method method, RepositoryMetadata metadata, ProjectionFactory factory,
+                NamedQueries namedQueries) {
+
+            ReactiveMongoQueryMethod queryMethod = new ReactiveMongoQueryMethod(method, metadata, factory,
+                mappingContext);
+            String namedQueryName = queryMethod.getNamedQueryName();
+
+            if (namedQueries.hasQuery(namedQueryName)) {
+                String namedQuery = namedQueries.getQuery(namedQueryName);
+				return new ReactiveStringBasedMongoQuery(
+					enhanceQuery(namedQuery, queryMethod),
+					queryMethod, operations, EXPRESSION_PARSER, evaluationContextProvider);
+            } else if (queryMethod.hasAnnotatedQuery()) {
+				return new ReactiveStringBasedMongoQuery(
+					enhanceQuery(extractAnnotatedQuery(method), queryMethod),
+					queryMethod, operations, EXPRESSION_PARSER, evaluationContextProvider);
+            } else {
+                return new InheritanceAwareReactivePartTreeMongoQuery(queryMethod, operations, snapshot);
+            }
+        }
+    }
+
+}
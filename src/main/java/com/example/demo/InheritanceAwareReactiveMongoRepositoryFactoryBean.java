@@ -0,0 +1,48 @@
+package com.example.demo;
+
+import java.io.Serializable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactoryBean;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.core.support.RepositoryFactorySupport;
+
+public class InheritanceAwareReactiveMongoRepositoryFactoryBean<T extends Repository<S, ID>, S, ID extends Serializable>
+        extends ReactiveMongoRepositoryFactoryBean<T, S, ID> {
+
+    private MongoEntityCache entityCache;
+    private MongoInheritanceWarmup warmup;
+    private MongoTypeCounters counters;
+
+    public InheritanceAwareReactiveMongoRepositoryFactoryBean(Class<? extends T> repositoryInterface) {
+        super(repositoryInterface);
+    }
+
+    @Autowired(required = false)
+    public void setEntityCache(MongoEntityCache entityCache) {
+        this.entityCache = entityCache;
+    }
+
+    @Autowired(required = false)
+    public void setCounters(MongoTypeCounters counters) {
+        this.counters = counters;
+    }
+
+    /**
+     * The repositories take their discriminator criteria from the warmed up snapshot.
+     */
+    @Autowired(required = false)
+    public void setWarmup(MongoInheritanceWarmup warmup) {
+        this.warmup = warmup;
+    }
+
+    @Override
+    protected RepositoryFactorySupport getFactoryInstance(ReactiveMongoOperations operations) {
+        InheritanceAwareReactiveMongoRepositoryFactory factory = new InheritanceAwareReactiveMongoRepositoryFactory(operations);
+        factory.setSnapshot(warmup!=null ? warmup.getSnapshot() : null);
+        factory.setEntityCache(entityCache);
+        factory.setCounters(counters);
+        return factory;
+    }
+
+}
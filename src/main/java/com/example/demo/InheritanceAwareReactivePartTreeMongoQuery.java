@@ -0,0 +1,54 @@
+package com.example.demo;
+
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.query.ConvertingParameterAccessor;
+import org.springframework.data.mongodb.repository.query.ReactiveMongoQueryMethod;
+import org.springframework.data.mongodb.repository.query.ReactivePartTreeMongoQuery;
+
+/**
+ * Reactive counterpart of {@link InheritanceAwarePartTreeMongoQuery}.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+public class InheritanceAwareReactivePartTreeMongoQuery extends ReactivePartTreeMongoQuery {
+
+    private final Criteria inheritanceCriteria;
+
+    public InheritanceAwareReactivePartTreeMongoQuery(ReactiveMongoQueryMethod method,
+            ReactiveMongoOperations mongoOperations) {
+        this(method, mongoOperations, MongoInheritanceSnapshot.EMPTY);
+    }
+
+    /**
+     * @param snapshot of the application context, giving the discriminator criteria
+     */
+    public InheritanceAwareReactivePartTreeMongoQuery(ReactiveMongoQueryMethod method,
+            ReactiveMongoOperations mongoOperations, MongoInheritanceSnapshot snapshot) {
+        super(method, mongoOperations);
+
+		// derived deletes are always scoped, also for the types covering their whole collection
+		inheritanceCriteria = getTree().isDelete()
+			? snapshot.getDeleteCriteria(method.getEntityInformation().getJavaType())
+			: snapshot.getCriteria(method.getEntityInformation().getJavaType());
+    }
+
+    @Override
+    protected Query createQuery(ConvertingParameterAccessor accessor) {
+        Query query = super.createQuery(accessor);
+        if (inheritanceCriteria != null) {
+            query.addCriteria(inheritanceCriteria);
+        }
+        return query;
+    }
+
+    @Override
+    protected Query createCountQuery(ConvertingParameterAccessor accessor) {
+        Query query = super.createCountQuery(accessor);
+        if (inheritanceCriteria != null) {
+            query.addCriteria(inheritanceCriteria);
+        }
+        return query;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.demo;
+
+/**
+ * Tuning of {@link InheritanceAwareSimpleMongoRepository}, bound from {@code inheritance.mongo.repository.*}
+ * properties.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+public class InheritanceAwareRepositorySettings {
+
+	/**
+	 * Max number of ids in a single {@code $in} delete.
+	 */
+	private int deleteBatchSize = 1000;
+
+	/**
+	 * Max number of writes in a single {@code bulkWrite} of mixed new and existing entities.
+	 */
+	private int saveBatchSize = 1000;
+
+	/**
+	 * Whether {@code count()} of the repositories covering the whole collection should count documents instead of
+	 * using the collection metadata count.
+	 */
+	private boolean exactCount = false;
+
+	/**
+	 * Cursor batch size of the streaming reads, {@code 0} leaves it to the server which starts with a small first batch
+	 * and then fills batches up to the message size limit.
+	 */
+	private int streamBatchSize = 0;
+
+	/**
+	 * Paging mode of the repositories not annotated with {@link InheritanceAwarePaging}.
+	 */
+	private InheritanceAwarePaging.Mode pagingMode = InheritanceAwarePaging.Mode.SEQUENTIAL;
+
+	/**
+	 * Max number of threads counting the totals of {@link InheritanceAwarePaging.Mode#CONCURRENT} paged reads, the
+	 * calling thread counts itself when all are busy.
+	 */
+	private int pagingThreads = 16;
+
+	public int getDeleteBatchSize() {
+		return deleteBatchSize;
+	}
+
+	public void setDeleteBatchSize(int deleteBatchSize) {
+		this.deleteBatchSize = deleteBatchSize;
+	}
+
+	public int getSaveBatchSize() {
+		return saveBatchSize;
+	}
+
+	public void setSaveBatchSize(int saveBatchSize) {
+		this.saveBatchSize = saveBatchSize;
+	}
+
+	public boolean isExactCount() {
+		return exactCount;
+	}
+
+	public void setExactCount(boolean exactCount) {
+		this.exactCount = exactCount;
+	}
+
+	public int getStreamBatchSize() {
+		return streamBatchSize;
+	}
+
+	public void setStreamBatchSize(int streamBatchSize) {
+		this.streamBatchSize = streamBatchSize;
+	}
+
+	public InheritanceAwarePaging.Mode getPagingMode() {
+		return pagingMode;
+	}
+
+	public void setPagingMode(InheritanceAwarePaging.Mode pagingMode) {
+		this.pagingMode = pagingMode;
+	}
+
+	public int getPagingThreads() {
+		return pagingThreads;
+	}
+
+	public void setPagingThreads(int pagingThreads) {
+		this.pagingThreads = pagingThreads;
+	}
+
+}
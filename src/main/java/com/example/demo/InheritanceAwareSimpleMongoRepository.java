@@ -1,32 +1,110 @@
 package com.example.demo;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoServerException;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.FindOneAndDeleteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.BsonRegularExpression;
+import org.bson.BsonString;
 import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.*;
+import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.mapping.PropertyHandler;
+import org.springframework.data.mongodb.core.MongoActionOperation;
+import org.springframework.data.mongodb.core.MongoExceptionTranslator;
 import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.MongoTemplateWriteConcern;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.mapping.event.AfterConvertEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterLoadEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveEvent;
+import org.springframework.data.mongodb.core.mapping.event.MongoMappingEvent;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.repository.query.MongoEntityInformation;
 import org.springframework.data.mongodb.repository.support.SimpleMongoRepository;
 import org.springframework.data.repository.support.PageableExecutionUtils;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.data.util.StreamUtils;
 import org.springframework.data.util.Streamable;
 import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
 
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 import java.util.stream.Collectors;
 
 import static org.springframework.data.mongodb.core.query.Criteria.where;
 
-public class InheritanceAwareSimpleMongoRepository<T, ID extends Serializable> extends SimpleMongoRepository<T, ID> {
+public class InheritanceAwareSimpleMongoRepository<T, ID extends Serializable> extends SimpleMongoRepository<T, ID>
+        implements InheritanceAwareMongoRepository<T, ID> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InheritanceAwareSimpleMongoRepository.class);
+
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+    private static final String ID_FIELD = "_id";
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+    private static final MongoExceptionTranslator EXCEPTION_TRANSLATOR = new MongoExceptionTranslator();
+    private static final String CONTENT_FACET = "content";
+    private static final String TOTAL_FACET = "total";
+    private static final String COUNT_FIELD = "count";
+    private static final int BSON_OBJECT_TOO_LARGE = 10334;
+    private static final String BSON_OBJECT_TOO_LARGE_NAME = "BSONObjectTooLarge";
 
     private final MongoOperations mongoOperations;
     private final MongoEntityInformation<T, ID> entityInformation;
-    private final Document classCriteriaDocument;
-    private final Criteria classCriteria;
+    private Document classCriteriaDocument;
+    private @Nullable Criteria classCriteria;
+    private @Nullable Criteria deleteCriteria;
+    private final QueryMapper queryMapper;
+    private InheritanceAwareRepositorySettings settings = new InheritanceAwareRepositorySettings();
+    private @Nullable ApplicationEventPublisher eventPublisher;
+    private InheritanceAwarePaging.Mode pagingMode = InheritanceAwarePaging.Mode.SEQUENTIAL;
+    private @Nullable ExecutorService pagingExecutor;
+    private @Nullable MongoTypeCounters counters;
+    private @Nullable MongoEntityCache entityCache;
+    private @Nullable MongoTypeProjection projection;
 
     public InheritanceAwareSimpleMongoRepository(MongoEntityInformation<T, ID> metadata,
             MongoOperations mongoOperations) {
@@ -36,6 +114,62 @@ public class InheritanceAwareSimpleMongoRepository<T, ID extends Serializable> e
 
 		classCriteria = MongoClassInheritanceScanner.getInstance().createInheritanceCritera(entityInformation.getJavaType());
 		classCriteriaDocument = classCriteria!=null ? classCriteria.getCriteriaObject() : new Document();
+		deleteCriteria = classCriteria;
+        queryMapper = new QueryMapper(mongoOperations.getConverter());
+    }
+
+    /**
+     * Takes the discriminator criteria from the warmed up snapshot of the application context, instead of the lazily
+     * built scanner ones, see {@link MongoInheritanceWarmup}.
+     */
+    public void setSnapshot(MongoInheritanceSnapshot snapshot) {
+        Assert.notNull(snapshot, "Snapshot must not be null!");
+        classCriteria = snapshot.getCriteria(entityInformation.getJavaType());
+        classCriteriaDocument = classCriteria!=null ? classCriteria.getCriteriaObject() : new Document();
+        deleteCriteria = snapshot.getDeleteCriteria(entityInformation.getJavaType());
+    }
+
+    public void setSettings(InheritanceAwareRepositorySettings settings) {
+        Assert.notNull(settings, "Settings must not be null!");
+        this.settings = settings;
+    }
+
+    public void setEventPublisher(@Nullable ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    public void setPagingMode(InheritanceAwarePaging.Mode pagingMode) {
+        Assert.notNull(pagingMode, "Paging mode must not be null!");
+        this.pagingMode = pagingMode;
+    }
+
+    /**
+     * Executor of the counts of {@link InheritanceAwarePaging.Mode#CONCURRENT} paged reads, without it they're
+     * executed sequentially.
+     */
+    public void setPagingExecutor(@Nullable ExecutorService pagingExecutor) {
+        this.pagingExecutor = pagingExecutor;
+    }
+
+    /**
+     * Enables {@link MongoTypeCounters} maintenance on inserts and deletes, and their use in {@link #count()}.
+     */
+    public void setCounters(@Nullable MongoTypeCounters counters) {
+        this.counters = counters;
+    }
+
+    /**
+     * Enables {@link MongoEntityCache} for {@link #findById} and {@link #existsById}.
+     */
+    public void setEntityCache(@Nullable MongoEntityCache entityCache) {
+        this.entityCache = entityCache;
+    }
+
+    /**
+     * Enables the field projection of multi-document reads, see {@link InheritanceAwareProjection}.
+     */
+    public void setProjection(@Nullable MongoTypeProjection projection) {
+        this.projection = projection;
     }
 
     protected Query getIdQuery(Object id) {
@@ -49,6 +183,17 @@ public class InheritanceAwareSimpleMongoRepository<T, ID extends Serializable> e
         return criteria;
     }
 
+    /**
+     * Id query of the deletes, scoped by the discriminator criteria also if the repository type covers the whole
+     * collection, see {@link MongoInheritanceSnapshot.DocumentType#getDeleteCriteria()}.
+     */
+    protected Query getDeleteIdQuery(Object id) {
+        Criteria criteria = where(entityInformation.getIdAttribute()).is(id);
+        if (deleteCriteria!=null)
+            criteria.andOperator(deleteCriteria);
+        return new Query(criteria);
+    }
+
     protected Query getQuery() {
         return classCriteria!=null ? new Query(classCriteria) : new Query();
     }
@@ -60,16 +205,110 @@ public class InheritanceAwareSimpleMongoRepository<T, ID extends Serializable> e
         if (classCriteria!=null)
             query.addCriteria(classCriteria);
 
-        return mongoOperations.find(query, entityInformation.getJavaType(), entityInformation.getCollectionName());
+        return mongoOperations.find(project(query), entityInformation.getJavaType(), entityInformation.getCollectionName());
+    }
+
+    protected Query project(Query query) {
+        return projection!=null ? projection.applyTo(query) : query;
     }
 
+    /**
+     * Repositories covering the whole collection (see {@link MongoInheritanceSnapshot.DocumentType#isCovering()})
+     * use the collection metadata count, which can be inaccurate after unclean shutdowns or in sharded clusters with
+     * orphaned documents. Use {@link #countExactly()} or {@code inheritance.mongo.repository.exact-count} if exact
+     * count is needed.
+     */
     @Override
     public long count() {
-        return classCriteria != null
-            ? mongoOperations.getCollection(entityInformation.getCollectionName()).count(classCriteriaDocument)
+        if (counters != null) {
+            List<String> aliases = MongoClassInheritanceScanner.getInstance().getAliases(entityInformation.getJavaType());
+            if (!aliases.isEmpty())
+                return counters.count(entityInformation.getCollectionName(), aliases);
+        }
+
+        if (classCriteria != null)
+            return mongoOperations.getCollection(entityInformation.getCollectionName()).count(classCriteriaDocument);
+
+        return settings.isExactCount()
+            ? countExactly()
             : mongoOperations.getCollection(entityInformation.getCollectionName()).count();
     }
 
+    /*
+     * (non-Javadoc)
+     * @see com.example.demo.InheritanceAwareMongoRepository#countExactly()
+     */
+    @Override
+    public long countExactly() {
+        Document result = mongoOperations.getCollection(entityInformation.getCollectionName())
+            .aggregate(Arrays.asList(
+                new Document("$match", classCriteriaDocument),
+                new Document("$group", new Document(ID_FIELD, null).append(COUNT_FIELD, new Document("$sum", 1)))))
+            .first();
+
+        return result!=null ? result.get(COUNT_FIELD, Number.class).longValue() : 0;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.example.demo.InheritanceAwareMongoRepository#countBySubtype()
+     */
+    @Override
+    public Map<Class<? extends T>, Long> countBySubtype() {
+        return countBySubtype(null, null);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.example.demo.InheritanceAwareMongoRepository#countBySubtype(org.springframework.data.mongodb.core.query.Criteria, org.bson.Document)
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<Class<? extends T>, Long> countBySubtype(@Nullable Criteria filter, @Nullable Document hint) {
+
+        Query query = getQuery();
+        if (filter!=null)
+            query.addCriteria(filter);
+        Document match = queryMapper.getMappedObject(query.getQueryObject(), mongoOperations.getConverter()
+            .getMappingContext().getRequiredPersistentEntity(entityInformation.getJavaType()));
+
+        List<Document> groups = mongoOperations.execute(entityInformation.getCollectionName(), collection -> {
+            AggregateIterable<Document> iterable = collection.aggregate(Arrays.asList(
+                new Document("$match", match),
+                new Document("$group", new Document(ID_FIELD, "$" + DiscriminatorCriteria.KEY)
+                    .append(COUNT_FIELD, new Document("$sum", 1)))));
+            if (hint!=null)
+                iterable = iterable.hint(hint);
+            return iterable.into(new ArrayList<>());
+        });
+
+        MongoClassInheritanceScanner scanner = MongoClassInheritanceScanner.getInstance();
+        ClassLoader classLoader = entityInformation.getJavaType().getClassLoader();
+        Map<Class<? extends T>, Long> result = new LinkedHashMap<>();
+
+        for (Document group: groups) {
+            Object value = group.get(ID_FIELD);
+            String alias = scanner.findAliasOfDiscriminatorValue(value);
+            String className = alias!=null ? scanner.findClassName(alias) : null;
+            if (className==null && alias!=null && ClassUtils.isPresent(alias, classLoader))
+                className = alias; // default spring data type hint: full class name
+
+            Class<?> type = className!=null
+                ? ClassUtils.resolveClassName(className, classLoader)
+                : value==null ? entityInformation.getJavaType() : null;
+
+            if (type==null || !entityInformation.getJavaType().isAssignableFrom(type)) {
+                LOGGER.warn("Unknown {} value: {} in {} collection, skipping {} documents", DiscriminatorCriteria.KEY,
+                    value, entityInformation.getCollectionName(), group.get(COUNT_FIELD));
+                continue;
+            }
+
+            result.merge((Class<? extends T>) type, group.get(COUNT_FIELD, Number.class).longValue(), Long::sum);
+        }
+
+        return result;
+    }
+
     /*
      * (non-Javadoc)
      * @see org.springframework.data.repository.CrudRepository#save(java.lang.Object)
@@ -81,8 +320,16 @@ public class InheritanceAwareSimpleMongoRepository<T, ID extends Serializable> e
 
         if (entityInformation.isNew(entity)) {
             mongoOperations.insert(entity, entityInformation.getCollectionName());
+            countInserted(Collections.singletonList(entity));
+        } else if (counters!=null && !getPersistentEntity(entity).hasVersionProperty()) {
+            // the document may not exist yet, then the upsert inserts it and has to be counted
+            bulkSave(Collections.singletonList(entity));
         } else {
-            mongoOperations.save(entity, entityInformation.getCollectionName());
+            try {
+                mongoOperations.save(entity, entityInformation.getCollectionName());
+            } finally {
+                evict(entityInformation.getRequiredId(entity));
+            }
         }
 
         return entity;
@@ -97,20 +344,152 @@ public class InheritanceAwareSimpleMongoRepository<T, ID extends Serializable> e
 
         Assert.notNull(entities, "The given Iterable of entities not be null!");
 
-        Streamable<S> source = Streamable.of(entities);
-        boolean allNew = source.stream().allMatch(it -> entityInformation.isNew(it));
+        List<S> result = Streamable.of(entities).stream().collect(Collectors.toList());
 
-        if (allNew) {
-
-            List<S> result = source.stream().collect(Collectors.toList());
+        if (result.stream().allMatch(it -> entityInformation.isNew(it))) {
             mongoOperations.insertAll(result);
-            return result;
-
+            countInserted(result);
+        } else if (result.stream().anyMatch(it -> getPersistentEntity(it).hasVersionProperty())) {
+            // optimistic locking needs a version check per document
+            result.forEach(this::save);
         } else {
-            return source.stream().map(this::save).collect(Collectors.toList());
+            for (List<S> chunk: Lists.partition(result, settings.getSaveBatchSize()))
+                bulkSave(chunk);
+        }
+
+        return result;
+    }
+
+    /**
+     * Saves entities with a single unordered {@code bulkWrite}: inserts for the new ones and {@code _class} scoped
+     * {@code replaceOne} upserts for the existing ones. Publishes the same mapping events as {@link MongoOperations}
+     * (so auditing works) and populates generated ids. The inserted and upserted documents are counted in
+     * {@link MongoTypeCounters}, also the successful ones of a partially failed write. The write concern is resolved
+     * like the one of the template writes, see {@link MongoTemplateWriteConcern}.
+     */
+    protected <S extends T> void bulkSave(List<S> entities) {
+
+        String collectionName = entityInformation.getCollectionName();
+        MongoConverter converter = mongoOperations.getConverter();
+        List<Document> documents = new ArrayList<>(entities.size());
+        List<WriteModel<Document>> writes = new ArrayList<>(entities.size());
+
+        for (S entity: entities) {
+            boolean isNew = entityInformation.isNew(entity);
+            publishEvent(new BeforeConvertEvent<>(entity, collectionName));
+
+            Document document = new Document();
+            converter.write(entity, document);
+            if (isNew && document.get(ID_FIELD)==null)
+                document.put(ID_FIELD, new ObjectId());
+
+            publishEvent(new BeforeSaveEvent<>(entity, document, collectionName));
+            documents.add(document);
+
+            if (isNew) {
+                writes.add(new InsertOneModel<>(document));
+            } else {
+                Document filter = new Document(ID_FIELD, document.get(ID_FIELD));
+                filter.putAll(classCriteriaDocument);
+                writes.add(new ReplaceOneModel<>(filter, document, UPSERT));
+            }
+        }
+
+        WriteConcern writeConcern = MongoTemplateWriteConcern.resolve(mongoOperations, MongoActionOperation.BULK,
+            collectionName, entityInformation.getJavaType(), null, null);
+
+        try {
+            mongoOperations.execute(collectionName, collection -> {
+                try {
+                    BulkWriteResult result = (writeConcern!=null ? collection.withWriteConcern(writeConcern) : collection)
+                        .bulkWrite(writes, UNORDERED);
+                    countInserted(entities, writes, result, Collections.emptySet());
+                    return result;
+                } catch (MongoBulkWriteException e) {
+                    // unordered, so the writes without errors are applied; the result is lost in the translation
+                    countInserted(entities, writes, e.getWriteResult(), e.getWriteErrors().stream()
+                        .map(BulkWriteError::getIndex)
+                        .collect(Collectors.toSet()));
+                    throw e;
+                }
+            });
+        } finally {
+            for (int i = 0; i < entities.size(); i++)
+                if (!(writes.get(i) instanceof InsertOneModel))
+                    evict(entityInformation.getRequiredId(entities.get(i)));
+        }
+
+        for (int i = 0; i < entities.size(); i++) {
+            populateId(entities.get(i), documents.get(i).get(ID_FIELD));
+            publishEvent(new AfterSaveEvent<>(entities.get(i), documents.get(i), collectionName));
         }
     }
 
+    /**
+     * Increments {@link MongoTypeCounters} of the inserted entities, if enabled.
+     */
+    protected void countInserted(List<?> entities) {
+        if (counters==null || entities.isEmpty())
+            return;
+
+        MongoClassInheritanceScanner scanner = MongoClassInheritanceScanner.getInstance();
+        entities.stream()
+            .map(it -> scanner.findAlias(it.getClass()))
+            .filter(Objects::nonNull)
+            .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()))
+            .forEach((alias, count) -> counters.increment(entityInformation.getCollectionName(), alias, count));
+    }
+
+    /**
+     * Counts the successful inserts and the upserts of the bulk write.
+     *
+     * @param failed indexes of the failed writes
+     */
+    protected void countInserted(List<?> entities, List<WriteModel<Document>> writes, BulkWriteResult result,
+            Set<Integer> failed) {
+        if (counters==null || !result.wasAcknowledged())
+            return;
+
+        List<Object> inserted = new ArrayList<>();
+        for (int i = 0; i < entities.size(); i++)
+            if (writes.get(i) instanceof InsertOneModel && !failed.contains(i))
+                inserted.add(entities.get(i));
+        result.getUpserts().forEach(it -> inserted.add(entities.get(it.getIndex())));
+        countInserted(inserted);
+    }
+
+    protected MongoPersistentEntity<?> getPersistentEntity(Object entity) {
+        return mongoOperations.getConverter().getMappingContext().getRequiredPersistentEntity(entity.getClass());
+    }
+
+    protected void populateId(Object entity, Object id) {
+        MongoPersistentEntity<?> persistentEntity = getPersistentEntity(entity);
+        MongoPersistentProperty idProperty = persistentEntity.getIdProperty();
+        if (idProperty==null)
+            return;
+
+        PersistentPropertyAccessor accessor = persistentEntity.getPropertyAccessor(entity);
+        if (accessor.getProperty(idProperty)==null)
+            accessor.setProperty(idProperty,
+                mongoOperations.getConverter().getConversionService().convert(id, idProperty.getType()));
+    }
+
+    /**
+     * Converts the document to the concrete subtype and publishes the same events as {@link MongoOperations} reads.
+     */
+    protected <S> S read(Class<S> type, Document document) {
+        String collectionName = entityInformation.getCollectionName();
+        publishEvent(new AfterLoadEvent<>(document, type, collectionName));
+        S entity = mongoOperations.getConverter().read(type, document);
+        publishEvent(new AfterConvertEvent<>(document, entity, collectionName));
+        return entity;
+    }
+
+    protected void publishEvent(MongoMappingEvent<?> event) {
+        if (eventPublisher!=null)
+            eventPublisher.publishEvent(event);
+    }
+
     /*
      * (non-Javadoc)
      * @see org.springframework.data.repository.CrudRepository#findById(java.io.Serializable)
@@ -120,6 +499,13 @@ public class InheritanceAwareSimpleMongoRepository<T, ID extends Serializable> e
 
         Assert.notNull(id, "The given id must not be null!");
 
+        if (entityCache!=null) {
+            Document document = findCachedDocument(id);
+            return document!=null && isOfRepositoryType(document)
+                ? Optional.of(read(entityInformation.getJavaType(), document))
+                : Optional.empty();
+        }
+
         return Optional.ofNullable(
             mongoOperations.findOne(getIdQuery(id), entityInformation.getJavaType(), entityInformation.getCollectionName()));
     }
@@ -133,10 +519,60 @@ public class InheritanceAwareSimpleMongoRepository<T, ID extends Serializable> e
 
         Assert.notNull(id, "The given id must not be null!");
 
+        if (entityCache!=null) {
+            Document document = entityCache.get(entityInformation.getCollectionName(), queryMapper.convertId(id));
+            if (document!=null)
+                return isOfRepositoryType(document);
+        }
+
         return mongoOperations.exists(getIdQuery(id), entityInformation.getJavaType(),
             entityInformation.getCollectionName());
     }
 
+    /**
+     * Document from {@link MongoEntityCache}, or read by {@code _id} only (to be reused by all repositories of the
+     * collection) and cached.
+     */
+    @Nullable
+    protected Document findCachedDocument(Object id) {
+        String collectionName = entityInformation.getCollectionName();
+        Object mappedId = queryMapper.convertId(id);
+
+        Document document = entityCache.get(collectionName, mappedId);
+        if (document==null) {
+            // taken before the read, so a write evicting the document meanwhile keeps the old one out of the cache
+            long generation = entityCache.getGeneration(collectionName, mappedId);
+            document = mongoOperations.execute(collectionName, collection ->
+                collection.find(new Document(ID_FIELD, mappedId)).first());
+            if (document!=null)
+                entityCache.put(collectionName, mappedId, document, generation);
+        }
+
+        return document;
+    }
+
+    /**
+     * Whether the document matches the discriminator criteria of this repository.
+     */
+    protected boolean isOfRepositoryType(Document document) {
+        if (classCriteria==null)
+            return true;
+
+        MongoClassInheritanceScanner scanner = MongoClassInheritanceScanner.getInstance();
+        String alias = scanner.findAliasOfDiscriminatorValue(document.get(DiscriminatorCriteria.KEY));
+        return alias!=null && scanner.isSubtypeAlias(alias, entityInformation.getJavaType());
+    }
+
+    /**
+     * Evicts the document from {@link MongoEntityCache}. Called after the write, also a failed one, because evicting
+     * before it lets a concurrent read cache the old document again. A read started before the write and finished
+     * after this eviction doesn't cache its document, see {@link MongoEntityCache#getGeneration}.
+     */
+    protected void evict(Object id) {
+        if (entityCache!=null)
+            entityCache.evict(entityInformation.getCollectionName(), queryMapper.convertId(id));
+    }
+
     /*
      * (non-Javadoc)
      * @see org.springframework.data.repository.CrudRepository#deleteById(java.lang.Object)
@@ -146,7 +582,28 @@ public class InheritanceAwareSimpleMongoRepository<T, ID extends Serializable> e
 
         Assert.notNull(id, "The given id must not be null!");
 
-        mongoOperations.remove(getIdQuery(id), entityInformation.getJavaType(), entityInformation.getCollectionName());
+        try {
+            if (counters==null) {
+                mongoOperations.remove(getDeleteIdQuery(id), entityInformation.getJavaType(),
+                    entityInformation.getCollectionName());
+                return;
+            }
+
+            // the alias of the removed document is needed to decrement its counter
+            Document removed = mongoOperations.getCollection(entityInformation.getCollectionName()).findOneAndDelete(
+                queryMapper.getMappedObject(getDeleteIdQuery(id).getQueryObject(), mongoOperations.getConverter()
+                    .getMappingContext().getRequiredPersistentEntity(entityInformation.getJavaType())),
+                new FindOneAndDeleteOptions().projection(new Document(DiscriminatorCriteria.KEY, 1)));
+
+            if (removed!=null) {
+                String alias = MongoClassInheritanceScanner.getInstance()
+                    .findAliasOfDiscriminatorValue(removed.get(DiscriminatorCriteria.KEY));
+                if (alias!=null)
+                    counters.increment(entityInformation.getCollectionName(), alias, -1);
+            }
+        } finally {
+            evict(id);
+        }
     }
 
     /*
@@ -168,9 +625,62 @@ public class InheritanceAwareSimpleMongoRepository<T, ID extends Serializable> e
     @Override
     public void deleteAll(Iterable<? extends T> entities) {
 
+        deleteInBatch(entities);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.example.demo.InheritanceAwareMongoRepository#deleteInBatch(java.lang.Iterable)
+     */
+    @Override
+    public long deleteInBatch(Iterable<? extends T> entities) {
+
         Assert.notNull(entities, "The given Iterable of entities not be null!");
 
-        entities.forEach(this::delete);
+        if (counters==null)
+            return deleteInBatch(deleteCriteria, Streamable.of(entities).stream()
+                .map(entityInformation::getRequiredId)
+                .collect(Collectors.toList()));
+
+        // removed per alias, to decrement the counters by the number of really removed documents
+        MongoClassInheritanceScanner scanner = MongoClassInheritanceScanner.getInstance();
+        Map<String, List<ID>> aliasIds = Streamable.of(entities).stream()
+            .collect(Collectors.groupingBy(it -> Optional.ofNullable(scanner.findAlias(it.getClass())).orElse(""),
+                LinkedHashMap::new, Collectors.mapping(entityInformation::getRequiredId, Collectors.toList())));
+
+        long deleted = 0;
+        for (Map.Entry<String, List<ID>> entry: aliasIds.entrySet()) {
+            if (entry.getKey().isEmpty()) {
+                deleted += deleteInBatch(deleteCriteria, entry.getValue());
+            } else {
+                long aliasDeleted = deleteInBatch(where(DiscriminatorCriteria.KEY)
+                    .in(scanner.getDiscriminatorValues(Collections.singletonList(entry.getKey()))), entry.getValue());
+                counters.increment(entityInformation.getCollectionName(), entry.getKey(), -aliasDeleted);
+                deleted += aliasDeleted;
+            }
+        }
+
+        return deleted;
+    }
+
+    /**
+     * Removes ids in chunks of the configured size.
+     *
+     * @param criteria discriminator criteria
+     */
+    protected long deleteInBatch(@Nullable Criteria criteria, List<ID> ids) {
+        long deleted = 0;
+        for (List<ID> chunk: Lists.partition(ids, settings.getDeleteBatchSize())) {
+            Query query = criteria!=null ? new Query(criteria) : new Query();
+            try {
+                deleted += mongoOperations.remove(query.addCriteria(where(entityInformation.getIdAttribute()).in(chunk)),
+                    entityInformation.getJavaType(), entityInformation.getCollectionName()).getDeletedCount();
+            } finally {
+                chunk.forEach(this::evict);
+            }
+        }
+
+        return deleted;
     }
 
     /*
@@ -179,7 +689,32 @@ public class InheritanceAwareSimpleMongoRepository<T, ID extends Serializable> e
      */
     @Override
     public void deleteAll() {
-        mongoOperations.remove(getQuery(), entityInformation.getCollectionName());
+        try {
+            removeAll();
+        } finally {
+            if (entityCache!=null)
+                entityCache.evictAll(entityInformation.getCollectionName());
+        }
+    }
+
+    /**
+     * Removes all documents of the repository type, decrementing {@link MongoTypeCounters} if enabled.
+     */
+    protected void removeAll() {
+        if (counters==null) {
+            mongoOperations.remove(deleteCriteria!=null ? new Query(deleteCriteria) : new Query(),
+                entityInformation.getCollectionName());
+            return;
+        }
+
+        // removed per alias, to decrement the counters by the number of really removed documents
+        MongoClassInheritanceScanner scanner = MongoClassInheritanceScanner.getInstance();
+        for (String alias: scanner.getAliases(entityInformation.getJavaType())) {
+            counters.increment(entityInformation.getCollectionName(), alias, -mongoOperations.remove(
+                new Query(where(DiscriminatorCriteria.KEY)
+                    .in(scanner.getDiscriminatorValues(Collections.singletonList(alias)))),
+                entityInformation.getCollectionName()).getDeletedCount());
+        }
     }
 
     /*
@@ -191,6 +726,180 @@ public class InheritanceAwareSimpleMongoRepository<T, ID extends Serializable> e
         return findAll(new Query());
     }
 
+    /*
+     * (non-Javadoc)
+     * @see com.example.demo.InheritanceAwareMongoRepository#streamAll()
+     */
+    @Override
+    public Stream<T> streamAll() {
+        return streamAll(Sort.unsorted());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.example.demo.InheritanceAwareMongoRepository#streamAll(org.springframework.data.domain.Sort)
+     */
+    @Override
+    public Stream<T> streamAll(Sort sort) {
+        return StreamUtils.createStreamFromIterator(iterateAll(sort));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.example.demo.InheritanceAwareMongoRepository#streamAllById(java.lang.Iterable)
+     */
+    @Override
+    public Stream<T> streamAllById(Iterable<ID> ids) {
+
+        Assert.notNull(ids, "The given Iterable of ids must not be null!");
+
+        return StreamUtils.createStreamFromIterator(iterate(getQuery().addCriteria(where(entityInformation.getIdAttribute())
+            .in(Streamable.of(ids).stream().collect(StreamUtils.toUnmodifiableList()))), entityInformation.getJavaType()));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.example.demo.InheritanceAwareMongoRepository#streamAll(org.springframework.data.domain.Example)
+     */
+    @Override
+    public <S extends T> Stream<S> streamAll(Example<S> example) {
+        return streamAll(example, Sort.unsorted());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.example.demo.InheritanceAwareMongoRepository#streamAll(org.springframework.data.domain.Example, org.springframework.data.domain.Sort)
+     */
+    @Override
+    public <S extends T> Stream<S> streamAll(Example<S> example, Sort sort) {
+
+        Assert.notNull(example, "Sample must not be null!");
+        Assert.notNull(sort, "Sort must not be null!");
+
+        return StreamUtils.createStreamFromIterator(
+            iterate(getQuery().addCriteria(new Criteria().alike(example)).with(sort), example.getProbeType()));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.example.demo.InheritanceAwareMongoRepository#iterateAll(org.springframework.data.domain.Sort)
+     */
+    @Override
+    public CloseableIterator<T> iterateAll(Sort sort) {
+
+        Assert.notNull(sort, "Sort must not be null!");
+
+        return iterate(getQuery().with(sort), entityInformation.getJavaType());
+    }
+
+    /**
+     * Opens a driver cursor for the query (which should already contain the discriminator criteria) with configured
+     * batch size and decodes each document to its concrete subtype on the fly.
+     */
+    protected <S extends T> CloseableIterator<S> iterate(Query query, Class<S> type) {
+
+        MongoPersistentEntity<?> persistentEntity = mongoOperations.getConverter().getMappingContext()
+            .getRequiredPersistentEntity(type);
+        Document filter = queryMapper.getMappedObject(query.getQueryObject(), persistentEntity);
+        Document sort = queryMapper.getMappedSort(query.getSortObject(), persistentEntity);
+        int batchSize = settings.getStreamBatchSize();
+
+        MongoCursor<Document> cursor = mongoOperations.execute(entityInformation.getCollectionName(), collection -> {
+            FindIterable<Document> iterable = collection.find(filter);
+            if (projection!=null)
+                iterable = iterable.projection(projection.getFields());
+            if (!sort.isEmpty())
+                iterable = iterable.sort(sort);
+            if (batchSize > 0)
+                iterable = iterable.batchSize(batchSize);
+            return iterable.iterator();
+        });
+
+        return new DocumentCursorIterator<>(cursor, type);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.example.demo.InheritanceAwareMongoRepository#scroll(org.springframework.data.domain.Sort, int, java.lang.String)
+     */
+    @Override
+    public KeysetSlice<T> scroll(Sort sort, int size, @Nullable String token) {
+
+        Assert.isTrue(size > 0, "Size must be positive!");
+
+        Keyset keyset = new Keyset(sort);
+        Document filter = new Document(classCriteriaDocument);
+        if (token!=null)
+            filter.putAll(keyset.after(keyset.position(token)));
+
+        List<Document> documents = mongoOperations.execute(entityInformation.getCollectionName(), collection ->
+            collection.find(filter).projection(keyset.getProjection()).sort(keyset.getSort()).limit(size + 1)
+                .into(new ArrayList<>(size + 1)));
+
+        String nextToken = null;
+        if (documents.size() > size) {
+            documents = documents.subList(0, size);
+            nextToken = keyset.token(documents.get(size - 1));
+        }
+
+        List<T> content = new ArrayList<>(documents.size());
+        for (Document document: documents)
+            content.add(read(entityInformation.getJavaType(), document));
+
+        return new KeysetSlice<>(content, nextToken);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.example.demo.InheritanceAwareMongoRepository#ensureKeysetIndex(org.springframework.data.domain.Sort)
+     */
+    @Override
+    public void ensureKeysetIndex(Sort sort) {
+
+        Document keys = new Document();
+        if (classCriteria!=null)
+            keys.put(DiscriminatorCriteria.KEY, 1);
+        keys.putAll(new Keyset(sort).getSort());
+
+        Index index = new Index();
+        keys.forEach((key, direction) -> index.on(key, ((Integer) direction) > 0 ? Sort.Direction.ASC : Sort.Direction.DESC));
+        mongoOperations.indexOps(entityInformation.getCollectionName()).ensureIndex(index);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.example.demo.InheritanceAwareMongoRepository#fetchExcluded(java.lang.Object)
+     */
+    @Override
+    public <S extends T> S fetchExcluded(S entity) {
+
+        Assert.notNull(entity, "Entity must not be null!");
+
+        if (projection==null || projection.getExcluded().isEmpty())
+            return entity;
+
+        Document fields = new Document(DiscriminatorCriteria.KEY, 1);
+        projection.getExcluded().forEach(it -> fields.put(it, 1));
+        Object id = queryMapper.convertId(entityInformation.getRequiredId(entity));
+
+        Document document = mongoOperations.execute(entityInformation.getCollectionName(), collection ->
+            collection.find(new Document(ID_FIELD, id)).projection(fields).first());
+        if (document==null)
+            return entity;
+
+        MongoPersistentEntity<?> persistentEntity = getPersistentEntity(entity);
+        PersistentPropertyAccessor source = persistentEntity.getPropertyAccessor(
+            mongoOperations.getConverter().read(entity.getClass(), document));
+        PersistentPropertyAccessor target = persistentEntity.getPropertyAccessor(entity);
+
+        persistentEntity.doWithProperties((PropertyHandler<MongoPersistentProperty>) property -> {
+            if (projection.getExcluded().contains(property.getFieldName()))
+                target.setProperty(property, source.getProperty(property));
+        });
+
+        return entity;
+    }
+
     /*
      * (non-Javadoc)
      * @see org.springframework.data.repository.CrudRepository#findAllById(java.lang.Iterable)
@@ -211,10 +920,7 @@ public class InheritanceAwareSimpleMongoRepository<T, ID extends Serializable> e
 
         Assert.notNull(pageable, "Pageable must not be null!");
 
-        Long count = count();
-        List<T> list = findAll(new Query().with(pageable));
-
-        return new PageImpl<T>(list, pageable, count);
+        return findPage(null, entityInformation.getJavaType(), pageable, this::count);
     }
 
     /*
@@ -239,6 +945,7 @@ public class InheritanceAwareSimpleMongoRepository<T, ID extends Serializable> e
         Assert.notNull(entity, "Entity must not be null!");
 
         mongoOperations.insert(entity, entityInformation.getCollectionName());
+        countInserted(Collections.singletonList(entity));
         return entity;
     }
 
@@ -258,6 +965,7 @@ public class InheritanceAwareSimpleMongoRepository<T, ID extends Serializable> e
         }
 
         mongoOperations.insertAll(list);
+        countInserted(list);
         return list;
     }
 
@@ -271,11 +979,111 @@ public class InheritanceAwareSimpleMongoRepository<T, ID extends Serializable> e
         Assert.notNull(example, "Sample must not be null!");
         Assert.notNull(pageable, "Pageable must not be null!");
 
-        Query q = getQuery().addCriteria(new Criteria().alike(example)).with(pageable);
-        List<S> list = mongoOperations.find(q, example.getProbeType(), entityInformation.getCollectionName());
+        Criteria criteria = new Criteria().alike(example);
+
+        return findPage(criteria, example.getProbeType(), pageable, () -> mongoOperations.count(
+            getQuery().addCriteria(criteria), example.getProbeType(), entityInformation.getCollectionName()));
+    }
+
+    /**
+     * Executes the paged read according to the {@link InheritanceAwarePaging.Mode} of this repository.
+     *
+     * @param criteria additional criteria, besides the discriminator
+     * @param total counts all documents matching the criteria
+     */
+    protected <S extends T> Page<S> findPage(@Nullable Criteria criteria, Class<S> type, Pageable pageable,
+            LongSupplier total) {
+
+        Query query = getQuery();
+        if (criteria!=null)
+            query.addCriteria(criteria);
+
+        if (pagingMode==InheritanceAwarePaging.Mode.FACET && pageable.isPaged()) {
+            Page<S> page = findFacetPage(query, type, pageable);
+            if (page!=null)
+                return page;
+        }
+
+        if (pagingMode==InheritanceAwarePaging.Mode.CONCURRENT && pageable.isPaged() && pagingExecutor!=null) {
+            Future<Long> count = pagingExecutor.submit(total::getAsLong);
+            try {
+                List<S> list = mongoOperations.find(project(query.with(pageable)), type,
+                    entityInformation.getCollectionName());
+                return new PageImpl<>(list, pageable, count.get());
+            } catch (ExecutionException e) {
+                Throwables.throwIfUnchecked(e.getCause());
+                throw new IllegalStateException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while counting " + entityInformation.getCollectionName(), e);
+            } finally {
+                // the count isn't needed anymore if the find failed
+                count.cancel(true);
+            }
+        }
+
+        List<S> list = mongoOperations.find(project(query.with(pageable)), type, entityInformation.getCollectionName());
+        return PageableExecutionUtils.getPage(list, pageable, total::getAsLong);
+    }
+
+    /**
+     * Reads the page content and total with a single {@code $match} + {@code $facet} aggregation.
+     *
+     * @return the page, or {@code null} if it exceeds the BSON document size limit, see
+     * {@link InheritanceAwarePaging.Mode#FACET}
+     */
+    @Nullable
+    protected <S extends T> Page<S> findFacetPage(Query query, Class<S> type, Pageable pageable) {
+
+        String collectionName = entityInformation.getCollectionName();
+        MongoPersistentEntity<?> persistentEntity = mongoOperations.getConverter().getMappingContext()
+            .getRequiredPersistentEntity(type);
+
+        List<Document> content = new ArrayList<>();
+        Document sort = queryMapper.getMappedSort(new Query().with(pageable.getSort()).getSortObject(), persistentEntity);
+        if (!sort.isEmpty())
+            content.add(new Document("$sort", sort));
+        content.add(new Document("$skip", pageable.getOffset()));
+        content.add(new Document("$limit", pageable.getPageSize()));
+        if (projection!=null)
+            content.add(new Document("$project", projection.getFields()));
+
+        List<Document> pipeline = Arrays.asList(
+            new Document("$match", queryMapper.getMappedObject(query.getQueryObject(), persistentEntity)),
+            new Document("$facet", new Document(CONTENT_FACET, content)
+                .append(TOTAL_FACET, Collections.singletonList(new Document("$count", TOTAL_FACET)))));
+
+        Document result = mongoOperations.execute(collectionName, collection -> {
+            try {
+                return collection.aggregate(pipeline).first();
+            } catch (MongoServerException e) {
+                if (!isTooLarge(e))
+                    throw e;
+                LOGGER.warn("Page {} of {} doesn't fit into a single $facet document, reading it with two queries",
+                    pageable, collectionName);
+                return null;
+            }
+        });
+        if (result==null)
+            return null;
+
+        @SuppressWarnings("unchecked") List<Document> documents = (List<Document>) result.get(CONTENT_FACET);
+        @SuppressWarnings("unchecked") List<Document> total = (List<Document>) result.get(TOTAL_FACET);
+
+        List<S> list = new ArrayList<>(documents.size());
+        for (Document document: documents)
+            list.add(read(type, document));
+
+        return new PageImpl<>(list, pageable,
+            total.isEmpty() ? 0 : total.get(0).get(TOTAL_FACET, Number.class).longValue());
+    }
 
-        return PageableExecutionUtils.getPage(list, pageable,
-            () -> mongoOperations.count(q, example.getProbeType(), entityInformation.getCollectionName()));
+    /**
+     * Whether the server failed building a document exceeding the BSON size limit.
+     */
+    protected boolean isTooLarge(MongoServerException e) {
+        return e.getCode()==BSON_OBJECT_TOO_LARGE || e instanceof MongoCommandException
+            && new BsonString(BSON_OBJECT_TOO_LARGE_NAME).equals(((MongoCommandException) e).getResponse().get("codeName"));
     }
 
     /*
@@ -290,7 +1098,7 @@ public class InheritanceAwareSimpleMongoRepository<T, ID extends Serializable> e
 
         Query q = getQuery().addCriteria(new Criteria().alike(example)).with(sort);
 
-        return mongoOperations.find(q, example.getProbeType(), entityInformation.getCollectionName());
+        return mongoOperations.find(project(q), example.getProbeType(), entityInformation.getCollectionName());
     }
 
     /*
@@ -342,4 +1150,171 @@ public class InheritanceAwareSimpleMongoRepository<T, ID extends Serializable> e
         return mongoOperations.exists(q, example.getProbeType(), entityInformation.getCollectionName());
     }
 
+    /**
+     * Converting {@link CloseableIterator} over the driver cursor, translating driver exceptions like
+     * {@link MongoOperations} does.
+     */
+    private class DocumentCursorIterator<S> implements CloseableIterator<S> {
+
+        private final MongoCursor<Document> cursor;
+        private final Class<S> type;
+
+        DocumentCursorIterator(MongoCursor<Document> cursor, Class<S> type) {
+            this.cursor = cursor;
+            this.type = type;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                return cursor.hasNext();
+            } catch (RuntimeException e) {
+                throw translateException(e);
+            }
+        }
+
+        @Override
+        public S next() {
+            Document document;
+            try {
+                document = cursor.next();
+            } catch (RuntimeException e) {
+                throw translateException(e);
+            }
+
+            return read(type, document);
+        }
+
+        @Override
+        public void close() {
+            cursor.close();
+        }
+
+        private RuntimeException translateException(RuntimeException e) {
+            RuntimeException translated = EXCEPTION_TRANSLATOR.translateExceptionIfPossible(e);
+            return translated!=null ? translated : e;
+        }
+
+    }
+
+    /**
+     * Mapped sort field and direction of {@link #scroll}, with {@code _id} tie-breaker.
+     */
+    private class Keyset {
+
+        private static final String VALUE = "v";
+
+        private final @Nullable String field;
+        private final int direction;
+
+        Keyset(Sort sort) {
+            Assert.notNull(sort, "Sort must not be null!");
+            List<Sort.Order> orders = sort.stream().collect(Collectors.toList());
+            Assert.isTrue(orders.size() <= 1, "Keyset scrolling supports at most one sort property!");
+
+            Sort.Order order = orders.isEmpty() ? null : orders.get(0);
+            field = order!=null
+                ? mongoOperations.getConverter().getMappingContext()
+                    .getPersistentPropertyPath(order.getProperty(), entityInformation.getJavaType())
+                    .toDotPath(MongoPersistentProperty::getFieldName)
+                : null;
+            direction = order==null || order.isAscending() ? 1 : -1;
+        }
+
+        Document getSort() {
+            Document sort = new Document();
+            if (field!=null && !ID_FIELD.equals(field))
+                sort.put(field, direction);
+            sort.put(ID_FIELD, direction);
+            return sort;
+        }
+
+        /**
+         * Repository projection, if any, always including the sort field needed for the continuation token.
+         */
+        @Nullable
+        Document getProjection() {
+            if (projection==null)
+                return null;
+
+            Document fields = projection.getFields();
+            if (field!=null && !fields.containsKey(field.split("\\.")[0]))
+                fields.put(field, 1);
+            return fields;
+        }
+
+        /**
+         * Continuation token of the last document: URL-safe Base64 of the extended JSON of its {@link #position}.
+         */
+        String token(Document last) {
+            return Base64.getUrlEncoder().encodeToString(position(last).toJson().getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Decodes the position of a continuation token. The token comes from the client, so it may only hold the plain
+         * values compared in the {@link #after} filter, and no query operators or regular expressions.
+         */
+        Document position(String token) {
+            Document position;
+            try {
+                position = Document.parse(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid continuation token!", e);
+            }
+
+            Assert.isTrue(position.containsKey(ID_FIELD) && position.keySet().stream()
+                .allMatch(key -> ID_FIELD.equals(key) || VALUE.equals(key)), "Invalid continuation token!");
+            Assert.isTrue(isPlainValue(position.get(ID_FIELD)) && isPlainValue(position.get(VALUE)),
+                "Invalid continuation token!");
+            return position;
+        }
+
+        private boolean isPlainValue(@Nullable Object value) {
+            if (value instanceof Document)
+                return ((Document) value).entrySet().stream()
+                    .allMatch(entry -> !entry.getKey().startsWith("$") && isPlainValue(entry.getValue()));
+            if (value instanceof List)
+                return ((List<?>) value).stream().allMatch(this::isPlainValue);
+            return !(value instanceof BsonRegularExpression || value instanceof Pattern);
+        }
+
+        /**
+         * Continuation token content: the raw sort values of the last document.
+         */
+        Document position(Document last) {
+            Document position = new Document(ID_FIELD, last.get(ID_FIELD));
+            if (field!=null && !ID_FIELD.equals(field)) {
+                Object value = last;
+                for (String part: field.split("\\."))
+                    value = value instanceof Document ? ((Document) value).get(part) : null;
+                position.put(VALUE, value);
+            }
+            return position;
+        }
+
+        /**
+         * Filter of the documents ordered after the position.
+         */
+        Document after(Document position) {
+            String operator = direction > 0 ? "$gt" : "$lt";
+            Document afterId = new Document(ID_FIELD, new Document(operator, position.get(ID_FIELD)));
+            if (field==null || ID_FIELD.equals(field))
+                return afterId;
+
+            // null and missing values are ordered before all others, and don't match any comparison operator
+            Object value = position.get(VALUE);
+            Document sameValue = new Document(field, value).append(ID_FIELD, afterId.get(ID_FIELD));
+            if (value==null)
+                return direction > 0
+                    ? new Document("$or", Arrays.asList(sameValue, new Document(field, new Document("$ne", null))))
+                    : sameValue;
+
+            List<Document> after = new ArrayList<>(Arrays.asList(new Document(field, new Document(operator, value)), sameValue));
+            if (direction < 0)
+                after.add(new Document(field, null));
+            return new Document("$or", after);
+        }
+
+    }
+
 }
@@ -0,0 +1,533 @@
+package com.example.demo;
+
+import com.mongodb.client.model.FindOneAndDeleteOptions;
+import com.mongodb.client.result.DeleteResult;
+import org.bson.Document;
+import org.reactivestreams.Publisher;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.query.MongoEntityInformation;
+import org.springframework.data.mongodb.repository.support.SimpleReactiveMongoRepository;
+import org.springframework.data.util.StreamUtils;
+import org.springframework.data.util.Streamable;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Reactive counterpart of {@link InheritanceAwareSimpleMongoRepository}. It doesn't read through {@link MongoEntityCache},
+ * but its writes evict the cached documents, because the cache is shared with the blocking repositories of the same
+ * collections.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+public class InheritanceAwareSimpleReactiveMongoRepository<T, ID extends Serializable>
+        extends SimpleReactiveMongoRepository<T, ID> {
+
+    private final ReactiveMongoOperations mongoOperations;
+    private final MongoEntityInformation<T, ID> entityInformation;
+    private @Nullable Criteria classCriteria;
+    private @Nullable Criteria deleteCriteria;
+    private final QueryMapper queryMapper;
+    private @Nullable MongoEntityCache entityCache;
+    private @Nullable MongoTypeCounters counters;
+
+    public InheritanceAwareSimpleReactiveMongoRepository(MongoEntityInformation<T, ID> metadata,
+            ReactiveMongoOperations mongoOperations) {
+        super(metadata, mongoOperations);
+        this.mongoOperations = mongoOperations;
+        this.entityInformation = metadata;
+
+		classCriteria = MongoClassInheritanceScanner.getInstance().createInheritanceCritera(entityInformation.getJavaType());
+		deleteCriteria = classCriteria;
+        queryMapper = new QueryMapper(mongoOperations.getConverter());
+    }
+
+    /**
+     * Takes the discriminator criteria from the warmed up snapshot of the application context, like
+     * {@link InheritanceAwareSimpleMongoRepository#setSnapshot}.
+     */
+    public void setSnapshot(MongoInheritanceSnapshot snapshot) {
+        Assert.notNull(snapshot, "Snapshot must not be null!");
+        classCriteria = snapshot.getCriteria(entityInformation.getJavaType());
+        deleteCriteria = snapshot.getDeleteCriteria(entityInformation.getJavaType());
+    }
+
+    /**
+     * {@link MongoEntityCache} evicted on writes.
+     */
+    public void setEntityCache(@Nullable MongoEntityCache entityCache) {
+        this.entityCache = entityCache;
+    }
+
+    /**
+     * {@link MongoTypeCounters} maintained on inserts and deletes. Existing ids saved as upserts aren't counted, they're
+     * fixed by the counters reconciliation.
+     */
+    public void setCounters(@Nullable MongoTypeCounters counters) {
+        this.counters = counters;
+    }
+
+    protected Query getIdQuery(Object id) {
+        return new Query(getIdCriteria(id));
+    }
+
+    protected Criteria getIdCriteria(Object id) {
+        Criteria criteria = where(entityInformation.getIdAttribute()).is(id);
+        if (classCriteria!=null)
+            criteria.andOperator(classCriteria);
+        return criteria;
+    }
+
+    /**
+     * Id query of the deletes, scoped by the discriminator criteria also if the repository type covers the whole
+     * collection, like {@link InheritanceAwareSimpleMongoRepository#getDeleteIdQuery}.
+     */
+    protected Query getDeleteIdQuery(Object id) {
+        Criteria criteria = where(entityInformation.getIdAttribute()).is(id);
+        if (deleteCriteria!=null)
+            criteria.andOperator(deleteCriteria);
+        return new Query(criteria);
+    }
+
+    protected Query getQuery() {
+        return classCriteria!=null ? new Query(classCriteria) : new Query();
+    }
+
+    protected Flux<T> findAll(Query query) {
+        if (classCriteria!=null)
+            query.addCriteria(classCriteria);
+
+        return mongoOperations.find(query, entityInformation.getJavaType(), entityInformation.getCollectionName());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.data.repository.reactive.ReactiveCrudRepository#findById(java.lang.Object)
+     */
+    @Override
+    public Mono<T> findById(ID id) {
+
+        Assert.notNull(id, "The given id must not be null!");
+
+        return mongoOperations.findOne(getIdQuery(id), entityInformation.getJavaType(),
+            entityInformation.getCollectionName());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.data.repository.reactive.ReactiveCrudRepository#findById(org.reactivestreams.Publisher)
+     */
+    @Override
+    public Mono<T> findById(Publisher<ID> publisher) {
+
+        Assert.notNull(publisher, "The given id must not be null!");
+
+        return Mono.from(publisher).flatMap(this::findById);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.data.repository.query.ReactiveQueryByExampleExecutor#findOne(org.springframework.data.domain.Example)
+     */
+    @Override
+    public <S extends T> Mono<S> findOne(Example<S> example) {
+
+        Assert.notNull(example, "Sample must not be null!");
+
+        Query q = getQuery().addCriteria(new Criteria().alike(example)).limit(2);
+
+        return mongoOperations.find(q, example.getProbeType(), entityInformation.getCollectionName()).buffer(2)
+            .flatMap(vals -> {
+                if (vals.size() > 1) {
+                    return Mono.error(new IncorrectResultSizeDataAccessException(1));
+                }
+                return Mono.just(vals.iterator().next());
+            }).next();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.data.repository.reactive.ReactiveCrudRepository#existsById(java.lang.Object)
+     */
+    @Override
+    public Mono<Boolean> existsById(ID id) {
+
+        Assert.notNull(id, "The given id must not be null!");
+
+        return mongoOperations.exists(getIdQuery(id), entityInformation.getJavaType(),
+            entityInformation.getCollectionName());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.data.repository.reactive.ReactiveCrudRepository#existsById(org.reactivestreams.Publisher)
+     */
+    @Override
+    public Mono<Boolean> existsById(Publisher<ID> publisher) {
+
+        Assert.notNull(publisher, "The given id must not be null!");
+
+        return Mono.from(publisher).flatMap(this::existsById);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.data.repository.query.ReactiveQueryByExampleExecutor#exists(org.springframework.data.domain.Example)
+     */
+    @Override
+    public <S extends T> Mono<Boolean> exists(Example<S> example) {
+
+        Assert.notNull(example, "Sample must not be null!");
+
+        Query q = getQuery().addCriteria(new Criteria().alike(example));
+        return mongoOperations.exists(q, example.getProbeType(), entityInformation.getCollectionName());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.data.repository.reactive.ReactiveCrudRepository#findAll()
+     */
+    @Override
+    public Flux<T> findAll() {
+        return findAll(new Query());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.data.repository.reactive.ReactiveCrudRepository#findAllById(java.lang.Iterable)
+     */
+    @Override
+    public Flux<T> findAllById(Iterable<ID> ids) {
+
+        Assert.notNull(ids, "The given Iterable of Id's must not be null!");
+
+        return findAll(new Query(new Criteria(entityInformation.getIdAttribute())
+            .in(Streamable.of(ids).stream().collect(StreamUtils.toUnmodifiableList()))));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.data.repository.reactive.ReactiveCrudRepository#findAllById(org.reactivestreams.Publisher)
+     */
+    @Override
+    public Flux<T> findAllById(Publisher<ID> ids) {
+
+        Assert.notNull(ids, "The given Publisher of Id's must not be null!");
+
+        return Flux.from(ids).buffer().flatMap(this::findAllById);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.data.repository.reactive.ReactiveSortingRepository#findAll(org.springframework.data.domain.Sort)
+     */
+    @Override
+    public Flux<T> findAll(Sort sort) {
+
+        Assert.notNull(sort, "Sort must not be null!");
+
+        return findAll(new Query().with(sort));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.data.repository.query.ReactiveQueryByExampleExecutor#findAll(org.springframework.data.domain.Example, org.springframework.data.domain.Sort)
+     */
+    @Override
+    public <S extends T> Flux<S> findAll(Example<S> example, Sort sort) {
+
+        Assert.notNull(example, "Sample must not be null!");
+        Assert.notNull(sort, "Sort must not be null!");
+
+        Query q = getQuery().addCriteria(new Criteria().alike(example)).with(sort);
+
+        return mongoOperations.find(q, example.getProbeType(), entityInformation.getCollectionName());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.data.repository.query.ReactiveQueryByExampleExecutor#findAll(org.springframework.data.domain.Example)
+     */
+    @Override
+    public <S extends T> Flux<S> findAll(Example<S> example) {
+        return findAll(example, Sort.unsorted());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.data.repository.reactive.ReactiveCrudRepository#count()
+     */
+    @Override
+    public Mono<Long> count() {
+        return mongoOperations.count(getQuery(), entityInformation.getJavaType(), entityInformation.getCollectionName());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.data.repository.query.ReactiveQueryByExampleExecutor#count(org.springframework.data.domain.Example)
+     */
+    @Override
+    public <S extends T> Mono<Long> count(Example<S> example) {
+
+        Assert.notNull(example, "Sample must not be null!");
+
+        Query q = getQuery().addCriteria(new Criteria().alike(example));
+        return mongoOperations.count(q, example.getProbeType(), entityInformation.getCollectionName());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.data.repository.reactive.ReactiveCrudRepository#save(java.lang.Object)
+     */
+    @Override
+    public <S extends T> Mono<S> save(S entity) {
+
+        Assert.notNull(entity, "Entity must not be null!");
+
+        if (entityInformation.isNew(entity))
+            return mongoOperations.insert(entity, entityInformation.getCollectionName())
+                .delayUntil(saved -> countInserted(Collections.singletonList(saved)));
+
+        return evictAfter(mongoOperations.save(entity, entityInformation.getCollectionName()),
+            () -> evict(entityInformation.getRequiredId(entity)));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.data.repository.reactive.ReactiveCrudRepository#saveAll(java.lang.Iterable)
+     */
+    @Override
+    public <S extends T> Flux<S> saveAll(Iterable<S> entities) {
+
+        Assert.notNull(entities, "The given Iterable of entities must not be null!");
+
+        List<S> source = Streamable.of(entities).stream().collect(Collectors.toList());
+
+        if (!source.stream().allMatch(entityInformation::isNew))
+            return Flux.fromIterable(source).flatMap(this::save);
+
+        Flux<S> inserted = mongoOperations.insert(source, entityInformation.getCollectionName());
+        return counters!=null
+            ? inserted.collectList().flatMapMany(saved -> countInserted(saved).thenMany(Flux.fromIterable(saved)))
+            : inserted;
+    }
+
+    /**
+     * Increments {@link MongoTypeCounters} of the inserted entities, if enabled.
+     */
+    protected Mono<Void> countInserted(List<?> entities) {
+        if (counters==null || entities.isEmpty())
+            return Mono.empty();
+
+        MongoClassInheritanceScanner scanner = MongoClassInheritanceScanner.getInstance();
+        return Flux.fromIterable(entities.stream()
+                .map(it -> scanner.findAlias(it.getClass()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()))
+                .entrySet())
+            .concatMap(it -> increment(it.getKey(), it.getValue()))
+            .then();
+    }
+
+    /**
+     * Adds delta to the alias counter. {@link MongoTypeCounters} use the blocking driver, so it's done on a worker
+     * thread instead of the reactive driver one.
+     */
+    protected Mono<Void> increment(String alias, long delta) {
+        return Mono.<Void>fromRunnable(() -> counters.increment(entityInformation.getCollectionName(), alias, delta))
+            .subscribeOn(Schedulers.elastic());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.data.repository.reactive.ReactiveCrudRepository#saveAll(org.reactivestreams.Publisher)
+     */
+    @Override
+    public <S extends T> Flux<S> saveAll(Publisher<S> entityStream) {
+
+        Assert.notNull(entityStream, "The given Publisher of entities must not be null!");
+
+        return Flux.from(entityStream).flatMap(this::save);
+    }
+
+    /**
+     * Runs the eviction once the write has finished, failed or was cancelled. Unlike {@code doFinally} this happens
+     * before the result is emitted, so a caller reading right after the write doesn't get the stale entry.
+     */
+    private <R> Mono<R> evictAfter(Mono<R> write, Runnable eviction) {
+        return write.doOnSuccessOrError((result, error) -> eviction.run()).doOnCancel(eviction);
+    }
+
+    /**
+     * Evicts the document from {@link MongoEntityCache}, after the write like
+     * {@link InheritanceAwareSimpleMongoRepository#evict}.
+     */
+    protected void evict(Object id) {
+        if (entityCache!=null)
+            entityCache.evict(entityInformation.getCollectionName(), queryMapper.convertId(id));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.data.repository.reactive.ReactiveCrudRepository#deleteById(java.lang.Object)
+     */
+    @Override
+    public Mono<Void> deleteById(ID id) {
+
+        Assert.notNull(id, "The given id must not be null!");
+
+        if (counters==null)
+            return evictAfter(mongoOperations.remove(getDeleteIdQuery(id), entityInformation.getJavaType(),
+                entityInformation.getCollectionName()), () -> evict(id))
+                .then();
+
+        // the alias of the removed document is needed to decrement its counter
+        Document filter = queryMapper.getMappedObject(getDeleteIdQuery(id).getQueryObject(),
+            mongoOperations.getConverter().getMappingContext().getRequiredPersistentEntity(entityInformation.getJavaType()));
+        Mono<Document> removed = mongoOperations.execute(entityInformation.getCollectionName(),
+            collection -> collection.findOneAndDelete(filter,
+                new FindOneAndDeleteOptions().projection(new Document(DiscriminatorCriteria.KEY, 1))))
+            .next();
+
+        return evictAfter(removed, () -> evict(id))
+            .flatMap(it -> {
+                String alias = MongoClassInheritanceScanner.getInstance()
+                    .findAliasOfDiscriminatorValue(it.get(DiscriminatorCriteria.KEY));
+                return alias!=null ? increment(alias, -1) : Mono.<Void>empty();
+            });
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.data.repository.reactive.ReactiveCrudRepository#deleteById(org.reactivestreams.Publisher)
+     */
+    @Override
+    public Mono<Void> deleteById(Publisher<ID> publisher) {
+
+        Assert.notNull(publisher, "Id must not be null!");
+
+        return Mono.from(publisher).flatMap(this::deleteById);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.data.repository.reactive.ReactiveCrudRepository#delete(java.lang.Object)
+     */
+    @Override
+    public Mono<Void> delete(T entity) {
+
+        Assert.notNull(entity, "The given entity must not be null!");
+
+        return deleteById(entityInformation.getRequiredId(entity));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.data.repository.reactive.ReactiveCrudRepository#deleteAll(java.lang.Iterable)
+     */
+    @Override
+    public Mono<Void> deleteAll(Iterable<? extends T> entities) {
+
+        Assert.notNull(entities, "The given Iterable of entities must not be null!");
+
+        if (counters==null)
+            return deleteAll(deleteCriteria, Streamable.of(entities).stream()
+                .map(entityInformation::getRequiredId)
+                .collect(Collectors.toList()))
+                .then();
+
+        // removed per alias, to decrement the counters by the number of really removed documents
+        MongoClassInheritanceScanner scanner = MongoClassInheritanceScanner.getInstance();
+        Map<String, List<ID>> aliasIds = Streamable.of(entities).stream()
+            .collect(Collectors.groupingBy(it -> Optional.ofNullable(scanner.findAlias(it.getClass())).orElse(""),
+                LinkedHashMap::new, Collectors.mapping(entityInformation::getRequiredId, Collectors.toList())));
+
+        return Flux.fromIterable(aliasIds.entrySet())
+            .concatMap(entry -> entry.getKey().isEmpty()
+                ? deleteAll(deleteCriteria, entry.getValue()).then()
+                : deleteAll(where(DiscriminatorCriteria.KEY)
+                    .in(scanner.getDiscriminatorValues(Collections.singletonList(entry.getKey()))), entry.getValue())
+                    .flatMap(deleted -> increment(entry.getKey(), -deleted)))
+            .then();
+    }
+
+    /**
+     * Removes the ids, evicting them from {@link MongoEntityCache}.
+     *
+     * @param criteria discriminator criteria
+     * @return number of removed documents
+     */
+    protected Mono<Long> deleteAll(@Nullable Criteria criteria, List<ID> ids) {
+        Query query = criteria!=null ? new Query(criteria) : new Query();
+        return evictAfter(mongoOperations.remove(query.addCriteria(where(entityInformation.getIdAttribute()).in(ids)),
+            entityInformation.getJavaType(), entityInformation.getCollectionName()), () -> ids.forEach(this::evict))
+            .map(DeleteResult::getDeletedCount);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.data.repository.reactive.ReactiveCrudRepository#deleteAll(org.reactivestreams.Publisher)
+     */
+    @Override
+    public Mono<Void> deleteAll(Publisher<? extends T> entityStream) {
+
+        Assert.notNull(entityStream, "The given Publisher of entities must not be null!");
+
+        return Flux.from(entityStream)
+            .map(entityInformation::getRequiredId)
+            .flatMap(this::deleteById)
+            .then();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.springframework.data.repository.reactive.ReactiveCrudRepository#deleteAll()
+     */
+    @Override
+    public Mono<Void> deleteAll() {
+        return evictAfter(removeAll(), () -> {
+                if (entityCache!=null)
+                    entityCache.evictAll(entityInformation.getCollectionName());
+            })
+            .then();
+    }
+
+    /**
+     * Removes all documents of the repository type, decrementing {@link MongoTypeCounters} if enabled.
+     */
+    protected Mono<Void> removeAll() {
+        if (counters==null)
+            return mongoOperations.remove(deleteCriteria!=null ? new Query(deleteCriteria) : new Query(),
+                entityInformation.getCollectionName()).then();
+
+        // removed per alias, to decrement the counters by the number of really removed documents
+        MongoClassInheritanceScanner scanner = MongoClassInheritanceScanner.getInstance();
+        return Flux.fromIterable(scanner.getAliases(entityInformation.getJavaType()))
+            .concatMap(alias -> mongoOperations.remove(new Query(where(DiscriminatorCriteria.KEY)
+                    .in(scanner.getDiscriminatorValues(Collections.singletonList(alias)))),
+                    entityInformation.getCollectionName())
+                .flatMap(result -> increment(alias, -result.getDeletedCount())))
+            .then();
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.example.demo;
+
+import org.bson.Document;
+import org.bson.json.JsonParseException;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.query.ConvertingParameterAccessor;
+import org.springframework.data.mongodb.repository.query.MongoQueryMethod;
+import org.springframework.data.mongodb.repository.query.StringBasedMongoQuery;
+import org.springframework.data.repository.query.EvaluationContextProvider;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.lang.Nullable;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link StringBasedMongoQuery} parsing the query once at lookup time, if it only uses plain {@code ?0} parameters
+ * as JSON values. Each call then deep-copies the parsed document with the converted parameter values bound in,
+ * instead of substituting them into the query string and parsing it again. Queries with quoted parameters, SpEL
+ * expressions, regular expressions or parameters in the field specification are left to {@link StringBasedMongoQuery}.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+public class InheritanceAwareStringBasedMongoQuery extends StringBasedMongoQuery {
+
+    private static final String PARAMETER = "$inheritanceAwareParameter";
+
+    private final @Nullable Document template;
+    private final @Nullable Document fields;
+
+    /**
+     * @param query query with {@code #{#entityName}} and {@code #{#entityAliases}} already expanded
+     * @param fieldSpec {@code @Query} field specification
+     */
+    public InheritanceAwareStringBasedMongoQuery(String query, @Nullable String fieldSpec, MongoQueryMethod method,
+            MongoOperations mongoOperations, SpelExpressionParser expressionParser,
+            EvaluationContextProvider evaluationContextProvider) {
+        super(query, method, mongoOperations, expressionParser, evaluationContextProvider);
+
+		int parameters = method.getParameters().getBindableParameters().getNumberOfParameters();
+		Document fields = StringUtils.hasText(fieldSpec) ? compile(fieldSpec, 0) : new Document();
+		this.fields = fields;
+		this.template = fields!=null ? compile(query, parameters) : null;
+    }
+
+    @Override
+    protected Query createQuery(ConvertingParameterAccessor accessor) {
+        if (template == null) {
+            return super.createQuery(accessor);
+        }
+
+        return new BasicQuery((Document) bind(template, accessor), new Document(fields)).with(accessor.getSort());
+    }
+
+	/**
+	 * Parses the query with plain {@code ?n} parameters replaced by markers, or returns {@code null} if it can't be
+	 * precompiled.
+	 *
+	 * @param parameters number of bindable parameters of the method
+	 */
+	@Nullable
+	static Document compile(String query, int parameters) {
+		StringBuilder json = new StringBuilder(query.length());
+		char quote = 0;
+
+		for (int i = 0; i < query.length(); i++) {
+			char c = query.charAt(i);
+
+			if (quote!=0) {
+				if (c=='?' || c=='#' && i + 1 < query.length() && query.charAt(i + 1)=='{')
+					return null;
+				if (c=='\\' && i + 1 < query.length())
+					json.append(c).append(query.charAt(++i));
+				else {
+					if (c==quote)
+						quote = 0;
+					json.append(c);
+				}
+				continue;
+			}
+
+			if (c=='\'' || c=='"') {
+				quote = c;
+				json.append(c);
+			} else if (c=='/' || c=='#') {
+				return null;
+			} else if (c=='?') {
+				int end = i + 1;
+				while (end < query.length() && Character.isDigit(query.charAt(end)))
+					end++;
+				if (end==i + 1)
+					return null;
+
+				int index = Integer.parseInt(query.substring(i + 1, end));
+				if (index >= parameters)
+					return null;
+
+				json.append("{'").append(PARAMETER).append("': ").append(index).append('}');
+				i = end - 1;
+			} else {
+				json.append(c);
+			}
+		}
+
+		try {
+			return Document.parse(json.toString());
+		} catch (JsonParseException e) {
+			return null;
+		}
+	}
+
+	private static Object bind(Object value, ConvertingParameterAccessor accessor) {
+		if (value instanceof Document) {
+			Document document = (Document) value;
+			if (document.size()==1 && document.containsKey(PARAMETER))
+				return accessor.getBindableValue(document.getInteger(PARAMETER));
+
+			Document bound = new Document();
+			document.forEach((key, it) -> bound.put(key, bind(it, accessor)));
+			return bound;
+		}
+
+		if (value instanceof List) {
+			List<?> list = (List<?>) value;
+			List<Object> bound = new ArrayList<>(list.size());
+			for (Object it: list)
+				bound.add(bind(it, accessor));
+			return bound;
+		}
+
+		return value;
+	}
+
+}
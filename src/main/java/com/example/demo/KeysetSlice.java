@@ -0,0 +1,40 @@
+package com.example.demo;
+
+import org.springframework.lang.Nullable;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Single chunk of {@link InheritanceAwareMongoRepository#scroll} keyset pagination together with the continuation
+ * token of the next chunk.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+public class KeysetSlice<T> {
+
+	private final List<T> content;
+	private final String nextToken;
+
+	public KeysetSlice(List<T> content, @Nullable String nextToken) {
+		this.content = Collections.unmodifiableList(content);
+		this.nextToken = nextToken;
+	}
+
+	public List<T> getContent() {
+		return content;
+	}
+
+	/**
+	 * Token to pass to the next {@link InheritanceAwareMongoRepository#scroll} call or {@code null} for the last slice.
+	 */
+	@Nullable
+	public String getNextToken() {
+		return nextToken;
+	}
+
+	public boolean hasNext() {
+		return nextToken!=null;
+	}
+
+}
@@ -1,116 +1,395 @@
 package com.example.demo;
 
-import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
 import org.springframework.core.type.filter.AnnotationTypeFilter;
 import org.springframework.data.annotation.TypeAlias;
+import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.lang.Nullable;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ConcurrentReferenceHashMap;
+import org.springframework.util.ConcurrentReferenceHashMap.ReferenceType;
+import org.springframework.util.StringUtils;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
-import static org.springframework.data.mongodb.core.query.Criteria.where;
-
 /**
  * Calculates subclasses for any mongo entity class. We use string class names instead of classes here, due to different classloader
  * problem with spring boot libraries.
+ * <p>
+ * The type hierarchy is read from the {@value #INDEX_LOCATION} manifests generated at compile time by
+ * {@code MongoTypeHierarchyIndexProcessor}. Only the classpath roots (directories or jars) containing
+ * {@value #BASE_PACKAGE} package but no manifest are scanned, which can take seconds for larger models. Note that jars
+ * without directory entries aren't found as roots at all.
  *
  * @author Lukasz Frankowski (http://lifeinide.com)
  */
 public class MongoClassInheritanceScanner {
 
-	protected List<String> classes = Collections.synchronizedList(new ArrayList<>());
-	protected Map<String, List<String>> allClasses = new ConcurrentHashMap<>();
-	protected Map<Class, List<String>> aliases = new ConcurrentHashMap<>();
+	private static final Logger LOGGER = LoggerFactory.getLogger(MongoClassInheritanceScanner.class);
+
+	public static final String INDEX_LOCATION = "META-INF/mongo-type-hierarchy.idx";
+	public static final String BASE_PACKAGE = "com.example";
+
+	protected List<TypeEntry> entries = new ArrayList<>();
+	protected MongoTypeGraph graph;
+	/**
+	 * Classes resolved through each classloader. The classes reference their classloader, so the weak keys are never
+	 * released alone, and the entries have to be removed with {@link #clear(ClassLoader)} when the loader is abandoned.
+	 */
+	protected Map<ClassLoader, Map<String, List<Class>>> allClasses = new ConcurrentReferenceHashMap<>(16,
+		ReferenceType.WEAK);
+	@Nullable protected volatile MongoTypeCodeRegistry typeCodes;
+	protected Map<Class<?>, Optional<Criteria>> inheritanceCriteria = new ConcurrentReferenceHashMap<>(16,
+		ReferenceType.WEAK);
+
+	/**
+	 * Lazy holder, the JVM class initialization guarantees a single, safely published instance.
+	 */
+	private static class Holder {
+
+		static final MongoClassInheritanceScanner INSTANCE = new MongoClassInheritanceScanner();
 
-	private static MongoClassInheritanceScanner instance;
+	}
 
 	private MongoClassInheritanceScanner() {
-		ClassPathScanningCandidateComponentProvider provider = new ClassPathScanningCandidateComponentProvider(false);
-		provider.addIncludeFilter(new AnnotationTypeFilter(TypeAlias.class));
-		provider.findCandidateComponents("com.example").forEach(it -> {
-			classes.add(it.getBeanClassName());
-		});
+		this(ClassUtils.getDefaultClassLoader(), true);
 	}
 
-	public static MongoClassInheritanceScanner getInstance() {
-		if (instance==null)
-			instance = new MongoClassInheritanceScanner();
+	/**
+	 * @param useIndex whether to read {@value #INDEX_LOCATION} manifests, or to scan all classpath roots
+	 */
+	MongoClassInheritanceScanner(ClassLoader classLoader, boolean useIndex) {
+		long start = System.currentTimeMillis();
+
+		Map<String, TypeEntry> result = new LinkedHashMap<>();
+		if (useIndex)
+			loadIndex(classLoader).forEach(it -> result.put(it.getClassName(), it));
+		int indexed = result.size();
+
+		List<String> roots = findNotIndexedRoots(classLoader, useIndex);
+		for (String root: roots)
+			scan(classLoader, root).forEach(it -> result.putIfAbsent(it.getClassName(), it));
+
+		if (indexed==0)
+			LOGGER.info("No {} found, scanned {} types from classpath in {} ms", INDEX_LOCATION, result.size(),
+				System.currentTimeMillis() - start);
+		else if (result.size() > indexed)
+			LOGGER.warn("Found {} types not indexed in {}, compile them with MongoTypeHierarchyIndexProcessor: {}",
+				result.size() - indexed, INDEX_LOCATION, roots);
+		else
+			LOGGER.debug("Loaded {} types from {} and scanned {} not indexed classpath roots in {} ms", indexed,
+				INDEX_LOCATION, roots.size(), System.currentTimeMillis() - start);
 
-		return instance;
+		entries = Collections.unmodifiableList(new ArrayList<>(result.values()));
+		graph = new MongoTypeGraph(entries);
 	}
 
 	/**
-	 * All classes of clazz, together with subclasses.
+	 * Reads and merges all {@value #INDEX_LOCATION} manifests visible to the classloader.
 	 */
-	@SuppressWarnings("unchecked")
-	public List<Class> getAllClasses(String className, ClassLoader classLoader) {
-		if (!allClasses.containsKey(className)) {
-
-			allClasses.computeIfAbsent(className, clazz1 -> classes.stream()
-			.map(it -> {
-				try {
-					return Class.forName(it);
-				} catch (ClassNotFoundException e) {
-					throw new RuntimeException(e);
-				}
-			})
-			.filter(it -> {
-				try {
-					return Class.forName(className).isAssignableFrom(it);
-				} catch (ClassNotFoundException e) {
-					throw new RuntimeException(e);
+	protected List<TypeEntry> loadIndex(ClassLoader classLoader) {
+		Map<String, TypeEntry> result = new LinkedHashMap<>();
+
+		try {
+			Enumeration<URL> urls = classLoader.getResources(INDEX_LOCATION);
+			while (urls.hasMoreElements()) {
+				URL url = urls.nextElement();
+				try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+					reader.lines()
+						.filter(line -> StringUtils.hasText(line) && !line.startsWith("#"))
+						.map(TypeEntry::parse)
+						.forEach(it -> result.putIfAbsent(it.getClassName(), it));
 				}
-			})
-				.map(Class::getName)
-			.collect(Collectors.toList()));
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+
+		return new ArrayList<>(result.values());
+	}
 
+	/**
+	 * Classpath roots containing {@value #BASE_PACKAGE} package, without {@value #INDEX_LOCATION} manifest if useIndex.
+	 */
+	protected List<String> findNotIndexedRoots(ClassLoader classLoader, boolean useIndex) {
+		String packagePath = ClassUtils.convertClassNameToResourcePath(BASE_PACKAGE);
+		Set<String> roots = findRoots(classLoader, packagePath);
+		if (useIndex)
+			roots.removeAll(findRoots(classLoader, INDEX_LOCATION));
+
+		return new ArrayList<>(roots);
+	}
+
+	private static Set<String> findRoots(ClassLoader classLoader, String path) {
+		Set<String> roots = new LinkedHashSet<>();
+
+		try {
+			Enumeration<URL> urls = classLoader.getResources(path);
+			while (urls.hasMoreElements()) {
+				String url = urls.nextElement().toString();
+				int index = url.lastIndexOf(path);
+				if (index >= 0)
+					roots.add(url.substring(0, index));
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
 		}
 
-		return allClasses.get(className).stream()
-			.map(it -> {
-				try {
-					return classLoader.loadClass(it);
-				} catch (ClassNotFoundException e) {
-					throw new RuntimeException(e);
-				}
-			})
-			.collect(Collectors.toList());
+		return roots;
+	}
+
+	/**
+	 * Scans {@value #BASE_PACKAGE} package of the classpath root for {@link TypeAlias} (also inherited) classes.
+	 */
+	protected List<TypeEntry> scan(ClassLoader classLoader, String root) {
+		PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver(classLoader);
+		MetadataReaderFactory readerFactory = new CachingMetadataReaderFactory(resolver);
+		AnnotationTypeFilter filter = new AnnotationTypeFilter(TypeAlias.class);
+		List<TypeEntry> result = new ArrayList<>();
+
+		try {
+			for (Resource resource: resolver.getResources(
+					root + ClassUtils.convertClassNameToResourcePath(BASE_PACKAGE) + "/**/*.class")) {
+				MetadataReader reader = readerFactory.getMetadataReader(resource);
+				if (!reader.getClassMetadata().isInterface() && filter.match(reader, readerFactory))
+					result.add(TypeEntry.of(ClassUtils.resolveClassName(reader.getClassMetadata().getClassName(),
+						classLoader)));
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+
+		return result;
+	}
+
+	public static MongoClassInheritanceScanner getInstance() {
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * Drops the classes resolved through the classloader. Called on the application context close, so eg. devtools
+	 * restarts don't leak the previous classloaders.
+	 */
+	public void clear(ClassLoader classLoader) {
+		allClasses.remove(classLoader);
+	}
+
+	/**
+	 * All classes of clazz, together with subclasses.
+	 */
+	public List<Class> getAllClasses(String className, ClassLoader classLoader) {
+		return allClasses
+			.computeIfAbsent(classLoader, it -> new ConcurrentHashMap<>())
+			.computeIfAbsent(className, it -> Collections.unmodifiableList(graph.getClassNames(className).stream()
+				.map(name -> ClassUtils.resolveClassName(name, classLoader))
+				.collect(Collectors.toList())));
 	}
 
 	/**
 	 * All aliases of clazz, together with subclass aliases.
 	 */
+	public List<String> getAliases(Class<?> clazz) {
+		return graph.getAliases(clazz.getName());
+	}
+
+	/**
+	 * Whether the alias denotes clazz or any of its subclasses.
+	 */
+	public boolean isSubtypeAlias(String alias, Class<?> clazz) {
+		return graph.isSubtype(alias, clazz.getName());
+	}
+
+	/**
+	 * All {@link TypeAlias} types known to the scanner, concrete and abstract.
+	 */
+	public List<TypeEntry> getTypes() {
+		return entries;
+	}
+
+	/**
+	 * All aliases known to the scanner.
+	 */
+	public List<String> getAllAliases() {
+		return graph.getAliases();
+	}
+
+	/**
+	 * Collections of all known concrete types.
+	 */
+	public Set<String> getCollections() {
+		return graph.getCollections();
+	}
+
+	/**
+	 * Aliases of all known concrete types stored in the collection.
+	 */
+	public List<String> getCollectionAliases(String collection) {
+		return graph.getCollectionAliases(collection);
+	}
+
+	/**
+	 * Concrete class name for the alias or {@code null} if unknown.
+	 */
+	@Nullable
+	public String findClassName(String alias) {
+		return graph.findClassName(alias);
+	}
+
+	@Nullable
+	public MongoTypeCodeRegistry getTypeCodes() {
+		return typeCodes;
+	}
+
+	/**
+	 * Switches discriminator criteria to integer type codes, or back to string aliases for {@code null}.
+	 */
+	public void setTypeCodes(@Nullable MongoTypeCodeRegistry typeCodes) {
+		this.typeCodes = typeCodes;
+		inheritanceCriteria.clear();
+	}
+
+	/**
+	 * Values of {@code _class} matching given aliases: the aliases themselves or type codes if enabled.
+	 */
 	@SuppressWarnings("unchecked")
-	public List<String> getAliases(Class clazz) {
-		return aliases.computeIfAbsent(clazz, clazz1 -> getAllClasses(clazz1.getName(), clazz1.getClassLoader()).stream()
-			.map(this::findAlias)
-			.filter(Objects::nonNull)
-			.collect(Collectors.toList()));
+	public List<Object> getDiscriminatorValues(List<String> aliases) {
+		MongoTypeCodeRegistry typeCodes = this.typeCodes;
+		return typeCodes!=null ? typeCodes.getDiscriminatorValues(aliases) : (List) aliases;
+	}
+
+	/**
+	 * Alias of the stored {@code _class} value: the value itself or the alias of the type code, if enabled.
+	 */
+	@Nullable
+	public String findAliasOfDiscriminatorValue(@Nullable Object value) {
+		MongoTypeCodeRegistry typeCodes = this.typeCodes;
+		if (value instanceof Number)
+			return typeCodes!=null ? typeCodes.findAlias(((Number) value).intValue()) : null;
+
+		return value instanceof String ? (String) value : null;
 	}
 
+	@Nullable
 	public String findAlias(Class<?> clazz) {
 		return (!Modifier.isAbstract(clazz.getModifiers()) && clazz.isAnnotationPresent(TypeAlias.class))
 			? clazz.getAnnotation(TypeAlias.class).value()
 			: null;
 	}
 
+	/**
+	 * Discriminator criteria of given aliases, matching their type codes if enabled, or {@code null} for no aliases.
+	 * Unlike {@link #createInheritanceCritera(Class)} the criteria isn't cached.
+	 */
 	@Nullable
 	public Criteria createInheritanceCritera(List<String> aliases) {
-		if (!aliases.isEmpty()) {
-			return new Criteria().orOperator(aliases.stream()
-				.map(alias -> where("_class").is(alias))
-				.toArray(Criteria[]::new));
-		}
+		List<Object> values = getDiscriminatorValues(aliases);
+		return values.isEmpty() ? null : new DiscriminatorCriteria(values);
+	}
 
-		return null;
+	/**
+	 * Whether clazz and its subclasses are the only known {@link TypeAlias} types stored in their collection. This
+	 * doesn't say anything about the documents actually stored, see {@link MongoInheritanceWarmup}.
+	 */
+	public boolean coversKnownTypes(Class<?> clazz) {
+		return graph.isCollectionCovering(clazz.getName());
 	}
 
+	/**
+	 * Discriminator criteria of clazz and its subclasses, or {@code null} if clazz has no aliased types. The criteria
+	 * is built once per class and shared. The repositories of the application context take it from its
+	 * {@link MongoInheritanceSnapshot}, which can also leave it out for the types covering their whole collection.
+	 */
 	@Nullable
 	public Criteria createInheritanceCritera(Class<?> clazz) {
-		return createInheritanceCritera(getAliases(clazz));
+		return inheritanceCriteria.computeIfAbsent(clazz,
+			it -> Optional.ofNullable(createInheritanceCritera(getAliases(it)))).orElse(null);
+	}
+
+	/**
+	 * Single {@link TypeAlias} annotated class description, as stored in {@value #INDEX_LOCATION}.
+	 */
+	public static class TypeEntry {
+
+		private final String className;
+		private final String alias;
+		private final boolean abstractType;
+		private final String collection;
+		private final List<String> superClasses;
+
+		public TypeEntry(String className, String alias, boolean abstractType, String collection,
+				List<String> superClasses) {
+			this.className = className;
+			this.alias = alias;
+			this.abstractType = abstractType;
+			this.collection = collection;
+			this.superClasses = Collections.unmodifiableList(superClasses);
+		}
+
+		/**
+		 * Parses {@code class|alias|abstract|collection|superclass1,superclass2,...} line.
+		 */
+		public static TypeEntry parse(String line) {
+			String[] parts = line.trim().split("\\|", -1);
+			if (parts.length!=5)
+				throw new IllegalArgumentException(String.format("Invalid %s line: %s", INDEX_LOCATION, line));
+
+			return new TypeEntry(parts[0], parts[1], Boolean.parseBoolean(parts[2]), parts[3],
+				parts[4].isEmpty() ? Collections.emptyList() : Arrays.asList(parts[4].split(",")));
+		}
+
+		public static TypeEntry of(Class<?> clazz) {
+			List<String> superClasses = new ArrayList<>();
+			for (Class<?> it = clazz.getSuperclass(); it!=null && it!=Object.class; it = it.getSuperclass())
+				superClasses.add(it.getName());
+
+			Document document = AnnotatedElementUtils.findMergedAnnotation(clazz, Document.class);
+			String collection = document!=null && StringUtils.hasText(document.collection())
+				? document.collection()
+				: StringUtils.uncapitalize(clazz.getSimpleName());
+
+			return new TypeEntry(clazz.getName(), clazz.getAnnotation(TypeAlias.class).value(),
+				Modifier.isAbstract(clazz.getModifiers()), collection, superClasses);
+		}
+
+		public String getClassName() {
+			return className;
+		}
+
+		public String getAlias() {
+			return alias;
+		}
+
+		public boolean isAbstractType() {
+			return abstractType;
+		}
+
+		public String getCollection() {
+			return collection;
+		}
+
+		/**
+		 * Superclasses from the nearest one, without {@link Object}.
+		 */
+		public List<String> getSuperClasses() {
+			return superClasses;
+		}
+
 	}
 
 }
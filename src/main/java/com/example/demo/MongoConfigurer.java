@@ -1,11 +1,201 @@
 package com.example.demo;
 
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.convert.EntityInstantiators;
+import org.springframework.data.convert.MappingContextTypeInformationMapper;
+import org.springframework.data.convert.SimpleTypeInformationMapper;
+import org.springframework.data.convert.TypeInformationMapper;
+import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.convert.DefaultDbRefResolver;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
+import org.springframework.data.mongodb.repository.config.EnableReactiveMongoRepositories;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Configuration
 @EnableMongoRepositories(repositoryBaseClass = InheritanceAwareSimpleMongoRepository.class,
         repositoryFactoryBeanClass = InheritanceAwareMongoRepositoryFactoryBean.class)
+@EnableReactiveMongoRepositories(repositoryBaseClass = InheritanceAwareSimpleReactiveMongoRepository.class,
+        repositoryFactoryBeanClass = InheritanceAwareReactiveMongoRepositoryFactoryBean.class)
 public class MongoConfigurer {
 
+    public static final String PAGING_EXECUTOR = "inheritanceAwarePagingExecutor";
+
+    @Bean
+    @ConfigurationProperties(prefix = "inheritance.mongo.repository")
+    public InheritanceAwareRepositorySettings inheritanceAwareRepositorySettings() {
+        return new InheritanceAwareRepositorySettings();
+    }
+
+    /**
+     * Counts the totals of {@link InheritanceAwarePaging.Mode#CONCURRENT} paged reads, instead of the common fork-join
+     * pool. The threads are started on demand, and when all are busy the calling thread counts itself.
+     */
+    @Bean(name = PAGING_EXECUTOR, destroyMethod = "shutdownNow")
+    public ExecutorService inheritanceAwarePagingExecutor(InheritanceAwareRepositorySettings settings) {
+        AtomicInteger threads = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(settings.getPagingThreads(), settings.getPagingThreads(),
+            60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "mongo-paging-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Opt-in proposals (or creation) of {@code _class} prefixed compound indexes for derived repository queries.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "inheritance.mongo.index-advisor.enabled", havingValue = "true")
+    public InheritanceAwareIndexAdvisor inheritanceAwareIndexAdvisor(MongoOperations mongoOperations,
+            ObjectProvider<MongoInheritanceWarmup> warmup,
+            @Value("${inheritance.mongo.index-advisor.create-indexes:false}") boolean createIndexes) {
+        MongoInheritanceWarmup inheritanceWarmup = warmup.getIfAvailable();
+        return new InheritanceAwareIndexAdvisor(mongoOperations, createIndexes,
+            inheritanceWarmup!=null ? inheritanceWarmup.getSnapshot() : null);
+    }
+
+    /**
+     * Builds {@link MongoInheritanceSnapshot} of all document types before the repositories are created.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "inheritance.mongo.warmup.enabled", havingValue = "true", matchIfMissing = true)
+    public MongoInheritanceWarmup mongoInheritanceWarmup(MongoDbFactory mongoDbFactory,
+            ObjectProvider<MongoTypeCodeRegistry> typeCodes) {
+        typeCodes.getIfAvailable(); // the snapshot criteria are built with the type codes
+        return new MongoInheritanceWarmup(mongoDbFactory);
+    }
+
+    /**
+     * Releases the classes of the closed context classloader cached in the JVM wide scanner, and its type codes.
+     */
+    @EventListener
+    public void onContextClosed(ContextClosedEvent event) {
+        MongoClassInheritanceScanner scanner = MongoClassInheritanceScanner.getInstance();
+        scanner.clear(event.getApplicationContext().getClassLoader());
+        for (MongoTypeCodeRegistry registry: event.getApplicationContext().getBeansOfType(MongoTypeCodeRegistry.class).values())
+            if (scanner.getTypeCodes()==registry)
+                scanner.setTypeCodes(null);
+    }
+
+    /**
+     * Opt-in integer type codes in {@code _class} instead of string aliases, see {@link MongoTypeCodeRegistry}.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "inheritance.mongo.type-codes.enabled", havingValue = "true")
+    public MongoTypeCodeRegistry mongoTypeCodeRegistry(MongoDbFactory mongoDbFactory,
+            @Value("${inheritance.mongo.type-codes.accept-legacy-aliases:true}") boolean acceptLegacyAliases) {
+        MongoClassInheritanceScanner scanner = MongoClassInheritanceScanner.getInstance();
+        MongoTypeCodeRegistry registry = new MongoTypeCodeRegistry(mongoDbFactory.getDb(), scanner.getAllAliases(),
+            acceptLegacyAliases);
+        scanner.setTypeCodes(registry);
+        return registry;
+    }
+
+    /**
+     * Opt-in materialized per-alias counters for {@code count()}, see {@link MongoTypeCounters}.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "inheritance.mongo.counters.enabled", havingValue = "true")
+    public MongoTypeCounters mongoTypeCounters(MongoDbFactory mongoDbFactory,
+            ObjectProvider<MongoTypeCodeRegistry> typeCodes,
+            @Value("${inheritance.mongo.counters.reconcile-interval:0}") long reconcileInterval) {
+        typeCodes.getIfAvailable(); // type codes have to be known to the scanner before the first reconciliation
+        return new MongoTypeCounters(mongoDbFactory.getDb(), reconcileInterval);
+    }
+
+    /**
+     * Opt-in type-aware cache for {@code findById} and {@code existsById}, see {@link MongoEntityCache}.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "inheritance.mongo.entity-cache.enabled", havingValue = "true")
+    public MongoEntityCache mongoEntityCache(
+            @Value("${inheritance.mongo.entity-cache.maximum-weight:16777216}") long maximumWeight,
+            @Value("${inheritance.mongo.entity-cache.expire-after-write:0}") long expireAfterWrite) {
+        return new MongoEntityCache(maximumWeight, expireAfterWrite);
+    }
+
+    /**
+     * Opt-in micrometer timers and summaries of the repository calls, see {@link MongoRepositoryMetrics}. Uses the
+     * context {@link MeterRegistry} (eg. the actuator one) or the global registry if there's none.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "inheritance.mongo.metrics.enabled", havingValue = "true")
+    public MongoRepositoryMetrics mongoRepositoryMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new MongoRepositoryMetrics(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    /**
+     * Opt-in query plan sampling of the repository queries, see {@link MongoExplainSampler}.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "inheritance.mongo.explain-sampler.enabled", havingValue = "true")
+    public MongoExplainSampler mongoExplainSampler(ObjectProvider<MongoClient> mongoClient,
+            @Value("${inheritance.mongo.explain-sampler.rate:0.1}") double rate,
+            @Value("${inheritance.mongo.explain-sampler.examined-ratio:10}") double examinedRatio,
+            @Value("${inheritance.mongo.explain-sampler.max-shapes:1000}") int maxShapes) {
+        return new MongoExplainSampler(database -> mongoClient.getObject().getDatabase(database), rate, examinedRatio,
+            maxShapes);
+    }
+
+    /**
+     * Registers {@link MongoExplainSampler} as the command listener of spring boot {@link MongoClient}. Replace with
+     * your own options bean, with the sampler registered, if you need other options.
+     */
+    @Bean
+    @ConditionalOnBean(MongoExplainSampler.class)
+    public MongoClientOptions mongoClientOptions(MongoExplainSampler explainSampler) {
+        return MongoClientOptions.builder().addCommandListener(explainSampler).build();
+    }
+
+    /**
+     * The same as spring boot one, but with {@link MongoTypeGraphTypeMapper} resolving the scanned types with
+     * precomputed lookups. With type codes enabled writes and reads {@link MongoTypeCodeRegistry} type codes, legacy
+     * string aliases and class names are still readable.
+     */
+    @Bean
+    public MappingMongoConverter mappingMongoConverter(MongoDbFactory mongoDbFactory, MongoMappingContext context,
+            MongoCustomConversions conversions, ObjectProvider<MongoTypeCodeRegistry> typeCodes) {
+        MongoTypeCodeRegistry registry = typeCodes.getIfAvailable();
+        List<TypeInformationMapper> mappers = new ArrayList<>();
+        if (registry!=null)
+            mappers.add(new MongoTypeCodeTypeInformationMapper(registry));
+        mappers.add(new MappingContextTypeInformationMapper(context));
+        mappers.add(new SimpleTypeInformationMapper());
+
+        MongoTypeGraphTypeMapper typeMapper = new MongoTypeGraphTypeMapper(mappers);
+        EntityInstantiators instantiators = new EntityInstantiators();
+        typeMapper.prewarm(context, instantiators);
+
+        MappingMongoConverter converter = new MappingMongoConverter(new DefaultDbRefResolver(mongoDbFactory), context);
+        converter.setCustomConversions(conversions);
+        converter.setInstantiators(instantiators);
+        converter.setTypeMapper(typeMapper);
+        return converter;
+    }
+
 }
@@ -0,0 +1,142 @@
+package com.example.demo;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.springframework.lang.Nullable;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded in-process cache of documents read by {@link InheritanceAwareSimpleMongoRepository#findById} and used by
+ * {@code findById} and {@code existsById} of all repositories stored in the same collection. Entries are keyed by
+ * collection and id only, and keep the stored {@code _class} value, so each repository checks whether the cached
+ * document is of its type (ie. {@code CarRepository} doesn't return a cached boat).
+ * <p>
+ * Documents are stored as immutable raw BSON, weighted by their size in bytes, and decoded into a new entity for each
+ * hit. The CRUD writes of the blocking and reactive repositories evict affected entries after the write, but derived
+ * delete queries, writes done by other application instances or bypassing the repositories aren't visible until the
+ * entry expires, so set the expiration if that matters.
+ * <p>
+ * A read started before a write may still return the old document after the write evicted it. To keep such a read
+ * from caching the old document again, each eviction bumps the generation of the key, and the read caches its document
+ * only if the generation taken before the read didn't change, see {@link #put(String, Object, Document, long)}.
+ * Generations are striped by the key hash, so an eviction may also skip caching a concurrent read of another key.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+public class MongoEntityCache {
+
+	private static final DocumentCodec CODEC = new DocumentCodec();
+	private static final int GENERATION_STRIPES = 1024;
+
+	private final Cache<Key, RawBsonDocument> cache;
+	private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+	/**
+	 * @param maximumWeight max size of all cached documents in bytes
+	 * @param expireAfterWrite expiration of the entries in milliseconds, {@code 0} for no expiration
+	 */
+	public MongoEntityCache(long maximumWeight, long expireAfterWrite) {
+		CacheBuilder<Key, RawBsonDocument> builder = CacheBuilder.newBuilder()
+			.maximumWeight(maximumWeight)
+			.weigher((Key key, RawBsonDocument document) -> document.getByteBuffer().remaining())
+			.recordStats();
+
+		if (expireAfterWrite > 0)
+			builder.expireAfterWrite(expireAfterWrite, TimeUnit.MILLISECONDS);
+
+		cache = builder.build();
+	}
+
+	/**
+	 * Cached document or {@code null}. Each call returns a new copy.
+	 */
+	@Nullable
+	public Document get(String collection, Object id) {
+		RawBsonDocument document = cache.getIfPresent(new Key(collection, id));
+		return document!=null ? document.decode(CODEC) : null;
+	}
+
+	/**
+	 * Generation of the key, to be taken before reading the document put into the cache.
+	 */
+	public long getGeneration(String collection, Object id) {
+		return generations.get(stripe(new Key(collection, id)));
+	}
+
+	/**
+	 * Caches the document unless the key was evicted since the generation was taken. If the eviction comes between
+	 * the check and the put, the entry is removed here or by the eviction itself, which bumps the generation first.
+	 */
+	public void put(String collection, Object id, Document document, long generation) {
+		Key key = new Key(collection, id);
+		int stripe = stripe(key);
+		if (generations.get(stripe)!=generation)
+			return;
+
+		cache.put(key, new RawBsonDocument(document, CODEC));
+		if (generations.get(stripe)!=generation)
+			cache.invalidate(key);
+	}
+
+	public void evict(String collection, Object id) {
+		Key key = new Key(collection, id);
+		generations.incrementAndGet(stripe(key));
+		cache.invalidate(key);
+	}
+
+	public void evictAll(String collection) {
+		for (int i = 0; i < GENERATION_STRIPES; i++)
+			generations.incrementAndGet(i);
+		cache.asMap().keySet().removeIf(it -> it.collection.equals(collection));
+	}
+
+	/**
+	 * Hit, miss and eviction stats.
+	 */
+	public CacheStats getStats() {
+		return cache.stats();
+	}
+
+	public long size() {
+		return cache.size();
+	}
+
+	private static int stripe(Key key) {
+		return (key.hashCode() & Integer.MAX_VALUE) % GENERATION_STRIPES;
+	}
+
+	private static class Key {
+
+		private final String collection;
+		private final Object id;
+
+		Key(String collection, Object id) {
+			this.collection = collection;
+			this.id = id;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this==o)
+				return true;
+			if (!(o instanceof Key))
+				return false;
+			Key key = (Key) o;
+			return collection.equals(key.collection) && id.equals(key.id);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(collection, id);
+		}
+
+	}
+
+}
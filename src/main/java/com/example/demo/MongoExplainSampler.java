@@ -0,0 +1,343 @@
+package com.example.demo;
+
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.Assert;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Opt-in sampler of the query plans of the repository queries. {@link InheritanceAwareMongoRepositoryFactory} adds
+ * {@link #createInterceptor} advice to each repository proxy, which exposes the called repository method to this
+ * driver {@link CommandListener}. Each distinct shape (the filter and sort structure with the {@code _class} values,
+ * but without the other values) of {@code find} and {@code count} commands sent from the repository methods is
+ * sampled with the given rate, and the sampled shapes are explained in the background with
+ * {@code executionStats} verbosity. Shapes with {@code COLLSCAN} in the winning plan, or examining more than
+ * {@code examinedRatio} documents per returned one, are logged and kept as {@link Finding}s.
+ * <p>
+ * Queries without any filter are never sampled, as they can't use any index anyway. The same for the reactive
+ * repositories, whose commands aren't sent from the calling thread.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+public class MongoExplainSampler implements CommandListener, DisposableBean {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(MongoExplainSampler.class);
+
+	private static final String COLLECTION_SCAN = "COLLSCAN";
+	private static final int QUEUE_SIZE = 100;
+	private static final BsonString PLACEHOLDER = new BsonString("?");
+
+	/**
+	 * Sampled query shape with an inefficient plan.
+	 */
+	public static class Finding {
+
+		private final String method;
+		private final List<String> aliases;
+		private final String shape;
+		private final List<String> stages;
+		private final long docsExamined;
+		private final long returned;
+
+		public Finding(String method, List<String> aliases, String shape, List<String> stages, long docsExamined,
+				long returned) {
+			this.method = method;
+			this.aliases = aliases;
+			this.shape = shape;
+			this.stages = stages;
+			this.docsExamined = docsExamined;
+			this.returned = returned;
+		}
+
+		/**
+		 * Repository method sending the query, as {@code Repository.method}.
+		 */
+		public String getMethod() {
+			return method;
+		}
+
+		/**
+		 * Aliases of the {@code _class} filter values (empty if there's no discriminator filter).
+		 */
+		public List<String> getAliases() {
+			return aliases;
+		}
+
+		public String getShape() {
+			return shape;
+		}
+
+		/**
+		 * Winning plan stages, from the root.
+		 */
+		public List<String> getStages() {
+			return stages;
+		}
+
+		public boolean isCollectionScan() {
+			return stages.contains(COLLECTION_SCAN);
+		}
+
+		public long getDocsExamined() {
+			return docsExamined;
+		}
+
+		public long getReturned() {
+			return returned;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s %s: %s, %d docs examined, %d returned, aliases %s", method, shape, stages,
+				docsExamined, returned, aliases);
+		}
+
+	}
+
+	private final ThreadLocal<String> currentMethod = new ThreadLocal<>();
+	private final Function<String, MongoDatabase> databases;
+	private final double rate;
+	private final double examinedRatio;
+	private final int maxShapes;
+	private final ConcurrentMap<String, Boolean> shapes = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Finding> findings = new ConcurrentHashMap<>();
+	private final ExecutorService explainer;
+
+	/**
+	 * @param databases database by name, resolved lazily when the first sample is explained
+	 * @param rate fraction of the distinct query shapes to explain, from {@code 0} to {@code 1}
+	 * @param examinedRatio max number of examined documents per returned one (for {@code find} only)
+	 * @param maxShapes max number of the distinct query shapes remembered, the next ones aren't sampled
+	 */
+	public MongoExplainSampler(Function<String, MongoDatabase> databases, double rate, double examinedRatio,
+			int maxShapes) {
+		Assert.isTrue(rate >= 0 && rate <= 1, "Sample rate has to be between 0 and 1!");
+		this.databases = databases;
+		this.rate = rate;
+		this.examinedRatio = examinedRatio;
+		this.maxShapes = maxShapes;
+		this.explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<>(QUEUE_SIZE), runnable -> {
+				Thread thread = new Thread(runnable, "mongo-explain-sampler");
+				thread.setDaemon(true);
+				return thread;
+			}, new ThreadPoolExecutor.DiscardPolicy());
+	}
+
+	/**
+	 * Interceptor exposing the called repository method to the sampler.
+	 */
+	public MethodInterceptor createInterceptor(Class<?> repositoryInterface) {
+		ConcurrentMap<Method, String> names = new ConcurrentHashMap<>();
+		return invocation -> {
+			Method method = invocation.getMethod();
+			String name = names.get(method);
+			if (name==null)
+				name = names.computeIfAbsent(method, it -> repositoryInterface.getSimpleName() + "." + it.getName());
+
+			String previous = currentMethod.get();
+			currentMethod.set(name);
+			try {
+				return invocation.proceed();
+			} finally {
+				if (previous!=null)
+					currentMethod.set(previous);
+				else
+					currentMethod.remove();
+			}
+		};
+	}
+
+	/**
+	 * Findings of the sampled shapes so far.
+	 */
+	public List<Finding> getFindings() {
+		return new ArrayList<>(findings.values());
+	}
+
+	/**
+	 * Waits until the explains queued so far are done, eg. before checking {@link #getFindings()}.
+	 *
+	 * @return {@code false} if the timeout elapsed first
+	 */
+	public boolean awaitExplained(long timeout, TimeUnit unit) throws InterruptedException {
+		// single explainer thread, so the marker runs after all queued explains
+		try {
+			explainer.submit(() -> {}).get(timeout, unit);
+			return true;
+		} catch (TimeoutException e) {
+			return false;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.mongodb.event.CommandListener#commandStarted(com.mongodb.event.CommandStartedEvent)
+	 */
+	@Override
+	public void commandStarted(CommandStartedEvent event) {
+		String method = currentMethod.get();
+		if (method==null)
+			return;
+
+		String filterKey;
+		switch (event.getCommandName()) {
+			case "find": filterKey = "filter"; break;
+			case "count": filterKey = "query"; break;
+			default: return;
+		}
+
+		BsonDocument command = event.getCommand();
+		BsonValue filter = command.get(filterKey);
+		if (filter==null || !filter.isDocument() || filter.asDocument().isEmpty())
+			return;
+
+		StringBuilder shape = new StringBuilder(event.getCommandName()).append(' ')
+			.append(command.getString(event.getCommandName()).getValue()).append(' ')
+			.append(shapeOf(filter).asDocument().toJson());
+		BsonValue sort = command.get("sort");
+		if (sort!=null && sort.isDocument())
+			shape.append(" sort ").append(sort.asDocument().toJson());
+		String key = shape.toString();
+
+		if (shapes.containsKey(key) || shapes.size() >= maxShapes)
+			return;
+		boolean sampled = ThreadLocalRandom.current().nextDouble() < rate;
+		if (shapes.putIfAbsent(key, sampled)!=null || !sampled)
+			return;
+
+		BsonDocument explained = command.clone();
+		explained.keySet().removeIf(name -> name.startsWith("$") || name.equals("lsid") || name.equals("txnNumber"));
+		String database = event.getDatabaseName();
+		boolean count = "count".equals(event.getCommandName());
+		List<String> aliases = findAliases(filter.asDocument());
+
+		explainer.execute(() -> explain(database, explained, count, method, aliases, key));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.mongodb.event.CommandListener#commandSucceeded(com.mongodb.event.CommandSucceededEvent)
+	 */
+	@Override
+	public void commandSucceeded(CommandSucceededEvent event) {
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.mongodb.event.CommandListener#commandFailed(com.mongodb.event.CommandFailedEvent)
+	 */
+	@Override
+	public void commandFailed(CommandFailedEvent event) {
+	}
+
+	protected void explain(String database, BsonDocument command, boolean count, String method, List<String> aliases,
+			String shape) {
+		try {
+			Document result = databases.apply(database).runCommand(new BsonDocument("explain", command)
+				.append("verbosity", new BsonString("executionStats")));
+
+			List<String> stages = new ArrayList<>();
+			collectStages(result.get("queryPlanner", Document.class).get("winningPlan", Document.class), stages);
+			Document stats = result.get("executionStats", Document.class);
+			long examined = stats.get("totalDocsExamined", Number.class).longValue();
+			long returned = stats.get("nReturned", Number.class).longValue();
+
+			if (stages.contains(COLLECTION_SCAN) || !count && examined > examinedRatio * Math.max(1, returned)) {
+				Finding finding = new Finding(method, aliases, shape, Collections.unmodifiableList(stages), examined,
+					returned);
+				findings.put(shape, finding);
+				LOGGER.warn("Inefficient query plan: {}", finding);
+			}
+		} catch (RuntimeException e) {
+			LOGGER.warn("Can't explain {} of {}", shape, method, e);
+		}
+	}
+
+	/**
+	 * Filter structure with {@code ?} instead of values, except of the discriminator values.
+	 */
+	private static BsonValue shapeOf(BsonValue value) {
+		if (value.isDocument()) {
+			BsonDocument shape = new BsonDocument();
+			value.asDocument().forEach((name, nested) ->
+				shape.put(name, DiscriminatorCriteria.KEY.equals(name) ? nested : shapeOf(nested)));
+			return shape;
+		}
+		if (value.isArray() && value.asArray().stream().anyMatch(BsonValue::isDocument)) {
+			BsonArray shape = new BsonArray();
+			value.asArray().forEach(it -> shape.add(shapeOf(it)));
+			return shape;
+		}
+		return PLACEHOLDER;
+	}
+
+	private static List<String> findAliases(BsonDocument filter) {
+		List<String> aliases = new ArrayList<>();
+		collectAliases(filter, aliases);
+		return Collections.unmodifiableList(aliases);
+	}
+
+	private static void collectAliases(BsonValue value, List<String> aliases) {
+		if (value.isDocument()) {
+			value.asDocument().forEach((name, nested) -> {
+				if (DiscriminatorCriteria.KEY.equals(name))
+					addAliases(nested, aliases);
+				else
+					collectAliases(nested, aliases);
+			});
+		} else if (value.isArray()) {
+			value.asArray().forEach(it -> collectAliases(it, aliases));
+		}
+	}
+
+	private static void addAliases(BsonValue value, List<String> aliases) {
+		MongoClassInheritanceScanner scanner = MongoClassInheritanceScanner.getInstance();
+		if (value.isDocument()) {
+			value.asDocument().values().forEach(it -> addAliases(it, aliases));
+		} else if (value.isArray()) {
+			((BsonArray) value).forEach(it -> addAliases(it, aliases));
+		} else {
+			Object discriminator = value.isString() ? value.asString().getValue()
+				: value.isNumber() ? value.asNumber().intValue() : null;
+			String alias = scanner.findAliasOfDiscriminatorValue(discriminator);
+			if (alias!=null && !aliases.contains(alias))
+				aliases.add(alias);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void collectStages(Document plan, List<String> stages) {
+		stages.add(plan.getString("stage"));
+		Document input = plan.get("inputStage", Document.class);
+		if (input!=null)
+			collectStages(input, stages);
+		List<Document> inputs = (List<Document>) plan.get("inputStages");
+		if (inputs!=null)
+			inputs.forEach(it -> collectStages(it, stages));
+	}
+
+	@Override
+	public void destroy() {
+		explainer.shutdownNow();
+	}
+
+}
@@ -0,0 +1,154 @@
+package com.example.demo;
+
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.lang.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable inheritance data of all {@link org.springframework.data.annotation.TypeAlias} types, built on the
+ * startup by {@link MongoInheritanceWarmup} and passed by the repository factories to the repositories and queries of
+ * the same application context, so the lookups of the known types don't go through the lazily filled caches.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+public class MongoInheritanceSnapshot {
+
+	/**
+	 * Precomputed inheritance data of a single document type.
+	 */
+	public static class DocumentType {
+
+		private final Class<?> type;
+		private final String collection;
+		private final List<Class<?>> classes;
+		private final List<String> aliases;
+		private final List<Object> discriminatorValues;
+		@Nullable private final Criteria criteria;
+		private final boolean covering;
+
+		public DocumentType(Class<?> type, String collection, List<Class<?>> classes, List<String> aliases,
+				List<Object> discriminatorValues, @Nullable Criteria criteria, boolean covering) {
+			this.type = type;
+			this.collection = collection;
+			this.classes = Collections.unmodifiableList(classes);
+			this.aliases = Collections.unmodifiableList(aliases);
+			this.discriminatorValues = Collections.unmodifiableList(discriminatorValues);
+			this.criteria = criteria;
+			this.covering = covering;
+		}
+
+		public Class<?> getType() {
+			return type;
+		}
+
+		public String getCollection() {
+			return collection;
+		}
+
+		/**
+		 * Concrete classes of the type, together with subclasses.
+		 */
+		public List<Class<?>> getClasses() {
+			return classes;
+		}
+
+		/**
+		 * Aliases of the type, together with subclass aliases.
+		 */
+		public List<String> getAliases() {
+			return aliases;
+		}
+
+		/**
+		 * Values of {@code _class} matching the aliases, see {@link MongoClassInheritanceScanner#getDiscriminatorValues}.
+		 */
+		public List<Object> getDiscriminatorValues() {
+			return discriminatorValues;
+		}
+
+		/**
+		 * Discriminator criteria, see {@link MongoClassInheritanceScanner#createInheritanceCritera(Class)}, or
+		 * {@code null} if the type is {@link #isCovering()}.
+		 */
+		@Nullable
+		public Criteria getCriteria() {
+			return covering ? null : criteria;
+		}
+
+		/**
+		 * Discriminator criteria also for the covering type, for the deletes, which must never depend on the
+		 * collection contents verified on the startup.
+		 */
+		@Nullable
+		public Criteria getDeleteCriteria() {
+			return criteria;
+		}
+
+		/**
+		 * Whether the type and its subclasses are the only types stored in the collection, as verified by
+		 * {@link MongoInheritanceWarmup}, so the discriminator criteria would match all documents anyway.
+		 */
+		public boolean isCovering() {
+			return covering;
+		}
+
+	}
+
+	/**
+	 * Snapshot without any types, everything is taken from {@link MongoClassInheritanceScanner}.
+	 */
+	public static final MongoInheritanceSnapshot EMPTY = new MongoInheritanceSnapshot(Collections.emptyMap(), 0);
+
+	private final Map<Class<?>, DocumentType> types;
+	private final long warmupMillis;
+
+	public MongoInheritanceSnapshot(Map<Class<?>, DocumentType> types, long warmupMillis) {
+		this.types = Collections.unmodifiableMap(types);
+		this.warmupMillis = warmupMillis;
+	}
+
+	@Nullable
+	public DocumentType get(Class<?> type) {
+		return types.get(type);
+	}
+
+	public Collection<DocumentType> getTypes() {
+		return types.values();
+	}
+
+	/**
+	 * Discriminator criteria of the type, see {@link DocumentType#getCriteria()}, or built by the scanner for the
+	 * types not in the snapshot.
+	 */
+	@Nullable
+	public Criteria getCriteria(Class<?> type) {
+		DocumentType documentType = types.get(type);
+		return documentType!=null
+			? documentType.getCriteria()
+			: MongoClassInheritanceScanner.getInstance().createInheritanceCritera(type);
+	}
+
+	/**
+	 * Discriminator criteria of the deletes of the type, see {@link DocumentType#getDeleteCriteria()}, or built by
+	 * the scanner for the types not in the snapshot.
+	 */
+	@Nullable
+	public Criteria getDeleteCriteria(Class<?> type) {
+		DocumentType documentType = types.get(type);
+		return documentType!=null
+			? documentType.getDeleteCriteria()
+			: MongoClassInheritanceScanner.getInstance().createInheritanceCritera(type);
+	}
+
+	/**
+	 * How long it took to build the snapshot.
+	 */
+	public long getWarmupMillis() {
+		return warmupMillis;
+	}
+
+}
@@ -0,0 +1,141 @@
+package com.example.demo;
+
+import com.example.demo.MongoClassInheritanceScanner.TypeEntry;
+import com.example.demo.MongoInheritanceSnapshot.DocumentType;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.CountOptions;
+import com.mongodb.client.model.Filters;
+import org.bson.BsonValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanClassLoaderAware;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.annotation.TypeAlias;
+import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.lang.Nullable;
+import org.springframework.util.ClassUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Builds {@link MongoInheritanceSnapshot} of all {@link TypeAlias} types known to {@link MongoClassInheritanceScanner}
+ * on its initialization, in parallel. The repository factory beans pass the snapshot to the repositories and their
+ * queries, so they're created with its discriminator criteria, and loading the subclasses and building the criteria of
+ * all types is moved from the first requests to the startup. The time it took is logged. The snapshot belongs to the
+ * application context, it's not published to the JVM wide scanner.
+ * <p>
+ * The types are taken from the scanner and not from the mapping context, because the mapping context may be still
+ * being created when the repository factory beans are resolved.
+ * <p>
+ * The types covering all known types of their collection are verified against the distinct {@code _class} values
+ * stored in the collection, and only then their repositories skip the discriminator criteria, see
+ * {@link DocumentType#isCovering()}. With an index on {@code _class} it's a quick
+ * index scan, without it the whole collection is read once on the startup.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+public class MongoInheritanceWarmup implements BeanClassLoaderAware, InitializingBean {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(MongoInheritanceWarmup.class);
+
+	private final MongoDbFactory mongoDbFactory;
+	private ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+	@Nullable private MongoInheritanceSnapshot snapshot;
+
+	public MongoInheritanceWarmup(MongoDbFactory mongoDbFactory) {
+		this.mongoDbFactory = mongoDbFactory;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.beans.factory.BeanClassLoaderAware#setBeanClassLoader(java.lang.ClassLoader)
+	 */
+	@Override
+	public void setBeanClassLoader(ClassLoader classLoader) {
+		this.classLoader = classLoader;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+	 */
+	@Override
+	public void afterPropertiesSet() {
+		MongoClassInheritanceScanner scanner = MongoClassInheritanceScanner.getInstance();
+
+		long start = System.currentTimeMillis();
+		Map<Class<?>, DocumentType> types = scanner.getTypes().parallelStream()
+			.map(it -> createType(scanner, it))
+			.collect(Collectors.toMap(DocumentType::getType, Function.identity()));
+
+		snapshot = new MongoInheritanceSnapshot(types, System.currentTimeMillis() - start);
+
+		LOGGER.info("Warmed up inheritance of {} document types in {} ms", types.size(), snapshot.getWarmupMillis());
+		if (LOGGER.isDebugEnabled())
+			types.values().forEach(it -> LOGGER.debug("{} in {}: aliases {}, criteria {}", it.getType().getSimpleName(),
+				it.getCollection(), it.getAliases(), it.getCriteria()!=null ? it.getCriteria().getCriteriaObject() : null));
+	}
+
+	/**
+	 * Snapshot built by this warmup, {@code null} before the initialization.
+	 */
+	@Nullable
+	public MongoInheritanceSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	protected DocumentType createType(MongoClassInheritanceScanner scanner, TypeEntry entry) {
+		Class<?> type = ClassUtils.resolveClassName(entry.getClassName(), classLoader);
+		List<String> aliases = scanner.getAliases(type);
+		List<Object> values = scanner.getDiscriminatorValues(aliases);
+		boolean covering = !values.isEmpty() && scanner.coversKnownTypes(type)
+			&& verifyCovering(entry.getCollection(), values);
+		if (covering)
+			LOGGER.debug("{} covers all documents of {}, no discriminator criteria needed", type.getSimpleName(),
+				entry.getCollection());
+
+		return new DocumentType(type, entry.getCollection(),
+			scanner.getAllClasses(type.getName(), classLoader).stream()
+				.<Class<?>>map(it -> it).collect(Collectors.toList()),
+			aliases,
+			values,
+			values.isEmpty() ? null : new DiscriminatorCriteria(values),
+			covering);
+	}
+
+	/**
+	 * Whether all documents of the collection have one of the discriminator values. Otherwise the documents without
+	 * {@code _class}, with a class name or an alias unknown to the scanner would be read through the repositories
+	 * without the discriminator criteria. An empty collection isn't covering, because nothing keeps other types from
+	 * being stored after the startup.
+	 */
+	protected boolean verifyCovering(String collection, List<Object> values) {
+		MongoCollection<org.bson.Document> documents = mongoDbFactory.getDb().getCollection(collection);
+		if (documents.count(new org.bson.Document(), new CountOptions().limit(1))==0) {
+			LOGGER.debug("{} is empty, its types are always filtered", collection);
+			return false;
+		}
+		if (documents.count(Filters.exists(DiscriminatorCriteria.KEY, false), new CountOptions().limit(1)) > 0) {
+			LOGGER.info("{} contains documents without {}, its types are always filtered", collection,
+				DiscriminatorCriteria.KEY);
+			return false;
+		}
+
+		for (BsonValue value: documents.distinct(DiscriminatorCriteria.KEY, BsonValue.class)) {
+			Object discriminator = value.isString() ? value.asString().getValue()
+				: value.isInt32() ? (Object) value.asInt32().getValue()
+				: value;
+			if (!values.contains(discriminator)) {
+				LOGGER.info("{} contains documents of unknown {} {}, its types are always filtered", collection,
+					DiscriminatorCriteria.KEY, discriminator);
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+}
@@ -0,0 +1,158 @@
+package com.example.demo;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.lang.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer instrumentation of the inheritance aware repositories. {@link InheritanceAwareMongoRepositoryFactory}
+ * adds {@link #createInterceptor} advice to each repository proxy, so every repository method call, either
+ * {@link InheritanceAwareSimpleMongoRepository} one or a derived or {@code @Query} query method, records:
+ * <ul>
+ *     <li>{@value #INVOCATIONS} timer, tagged with {@code repository}, {@code method}, {@code entity},
+ *     {@code collection} and {@code outcome} ({@code success} or {@code error})</li>
+ *     <li>{@value #DOCUMENTS} summary of the returned documents, for entity, {@link Optional}, {@link Collection} and
+ *     {@link Slice} results</li>
+ *     <li>{@value #ALIASES} summary of the discriminator values in the repository type filter ({@code 0} if the type
+ *     covers its collection)</li>
+ * </ul>
+ * All meters of a repository method are registered on its first call and then looked up by the {@link Method}, so the
+ * calls don't build any tags.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+public class MongoRepositoryMetrics {
+
+	public static final String INVOCATIONS = "inheritance.mongo.repository.invocations";
+	public static final String DOCUMENTS = "inheritance.mongo.repository.documents";
+	public static final String ALIASES = "inheritance.mongo.repository.aliases";
+
+	private final MeterRegistry registry;
+	private final Clock clock;
+
+	public MongoRepositoryMetrics(MeterRegistry registry) {
+		this.registry = registry;
+		this.clock = registry.config().clock();
+	}
+
+	/**
+	 * Interceptor recording the meters of the repository proxy calls.
+	 *
+	 * @param criteria discriminator criteria of the repository, see {@link MongoInheritanceSnapshot#getCriteria(Class)}
+	 */
+	public MethodInterceptor createInterceptor(Class<?> repositoryInterface, Class<?> domainType, String collection,
+			@Nullable Criteria criteria) {
+		int aliases = criteria instanceof DiscriminatorCriteria ? ((DiscriminatorCriteria) criteria).getValues().size() : 0;
+
+		return new MetricsInterceptor(Tags.of("repository", repositoryInterface.getSimpleName(),
+			"entity", domainType.getSimpleName(), "collection", collection), domainType, aliases);
+	}
+
+	/**
+	 * Number of documents in the repository method result or {@code -1} if unknown (eg. counts or streams).
+	 */
+	static int countDocuments(@Nullable Object result, Class<?> domainType) {
+		if (result==null)
+			return 0;
+		if (result instanceof Optional)
+			return ((Optional<?>) result).isPresent() ? 1 : 0;
+		if (result instanceof Collection)
+			return ((Collection<?>) result).size();
+		if (result instanceof Slice)
+			return ((Slice<?>) result).getNumberOfElements();
+		if (result instanceof KeysetSlice)
+			return ((KeysetSlice<?>) result).getContent().size();
+		if (domainType.isInstance(result))
+			return 1;
+
+		return -1;
+	}
+
+	private static class MethodMeters {
+
+		final Timer success;
+		final Timer error;
+		final DistributionSummary documents;
+		final DistributionSummary aliases;
+
+		MethodMeters(Timer success, Timer error, DistributionSummary documents, DistributionSummary aliases) {
+			this.success = success;
+			this.error = error;
+			this.documents = documents;
+			this.aliases = aliases;
+		}
+
+	}
+
+	private class MetricsInterceptor implements MethodInterceptor {
+
+		private final Tags tags;
+		private final Class<?> domainType;
+		private final int aliases;
+		private final ConcurrentMap<Method, MethodMeters> meters = new ConcurrentHashMap<>();
+
+		MetricsInterceptor(Tags tags, Class<?> domainType, int aliases) {
+			this.tags = tags;
+			this.domainType = domainType;
+			this.aliases = aliases;
+		}
+
+		private MethodMeters createMeters(Method method) {
+			Tags methodTags = tags.and("method", method.getName());
+			return new MethodMeters(
+				registry.timer(INVOCATIONS, methodTags.and("outcome", "success")),
+				registry.timer(INVOCATIONS, methodTags.and("outcome", "error")),
+				registry.summary(DOCUMENTS, methodTags),
+				registry.summary(ALIASES, methodTags));
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see org.aopalliance.intercept.MethodInterceptor#invoke(org.aopalliance.intercept.MethodInvocation)
+		 */
+		@Override
+		public Object invoke(MethodInvocation invocation) throws Throwable {
+			Method method = invocation.getMethod();
+			if (method.getDeclaringClass()==Object.class)
+				return invocation.proceed();
+
+			// get() first, computeIfAbsent() locks the bin even if the key is present
+			MethodMeters methodMeters = meters.get(method);
+			if (methodMeters==null)
+				methodMeters = meters.computeIfAbsent(method, this::createMeters);
+
+			long start = clock.monotonicTime();
+			Object result;
+			try {
+				result = invocation.proceed();
+			} catch (Throwable e) {
+				methodMeters.error.record(clock.monotonicTime() - start, TimeUnit.NANOSECONDS);
+				throw e;
+			}
+			methodMeters.success.record(clock.monotonicTime() - start, TimeUnit.NANOSECONDS);
+
+			int documents = countDocuments(result, domainType);
+			if (documents >= 0)
+				methodMeters.documents.record(documents);
+			methodMeters.aliases.record(aliases);
+
+			return result;
+		}
+
+	}
+
+}
@@ -0,0 +1,109 @@
+package com.example.demo;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexOptions;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+
+import java.util.*;
+
+/**
+ * Maps {@link org.springframework.data.annotation.TypeAlias} values to small integer type codes, stored in the
+ * {@value #COLLECTION} registry collection as {@code {_id: code, alias: alias}}. Codes are never reused nor changed,
+ * new aliases get the next free code on startup, concurrent startups are resolved by the unique alias index.
+ * <p>
+ * With type codes enabled documents carry the integer code in {@code _class} instead of the string alias. During the
+ * migration the registry can still accept legacy string aliases, which makes the discriminator criteria match both.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+public class MongoTypeCodeRegistry {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(MongoTypeCodeRegistry.class);
+
+	public static final String COLLECTION = "_type_codes";
+
+	private static final String ALIAS = "alias";
+
+	private final Map<String, Integer> codes = new HashMap<>();
+	private final Map<Integer, String> aliases = new HashMap<>();
+	private final boolean acceptLegacyAliases;
+
+	public MongoTypeCodeRegistry(MongoDatabase database, Collection<String> aliases, boolean acceptLegacyAliases) {
+		this.acceptLegacyAliases = acceptLegacyAliases;
+
+		MongoCollection<Document> collection = database.getCollection(COLLECTION);
+		collection.createIndex(new Document(ALIAS, 1), new IndexOptions().unique(true));
+
+		load(collection);
+		aliases.stream()
+			.filter(alias -> !codes.containsKey(alias))
+			.forEach(alias -> register(collection, alias));
+	}
+
+	private void load(MongoCollection<Document> collection) {
+		for (Document document: collection.find()) {
+			Integer code = document.getInteger("_id");
+			String alias = document.getString(ALIAS);
+			codes.put(alias, code);
+			aliases.put(code, alias);
+		}
+	}
+
+	private void register(MongoCollection<Document> collection, String alias) {
+		while (!codes.containsKey(alias)) {
+			int code = aliases.keySet().stream().mapToInt(Integer::intValue).max().orElse(0) + 1;
+
+			try {
+				collection.insertOne(new Document("_id", code).append(ALIAS, alias));
+				codes.put(alias, code);
+				aliases.put(code, alias);
+				LOGGER.info("Registered type code {} for alias: {}", code, alias);
+			} catch (MongoWriteException e) {
+				if (e.getError().getCategory()!=ErrorCategory.DUPLICATE_KEY)
+					throw e;
+
+				// someone else registered this code or alias in the meantime
+				load(collection);
+			}
+		}
+	}
+
+	@Nullable
+	public Integer findCode(String alias) {
+		return codes.get(alias);
+	}
+
+	@Nullable
+	public String findAlias(Integer code) {
+		return aliases.get(code);
+	}
+
+	public boolean isAcceptLegacyAliases() {
+		return acceptLegacyAliases;
+	}
+
+	/**
+	 * Values of {@code _class} to be matched for given aliases: their codes, and the aliases themselves if legacy
+	 * aliases are accepted.
+	 */
+	public List<Object> getDiscriminatorValues(List<String> aliases) {
+		List<Object> result = new ArrayList<>(acceptLegacyAliases ? aliases.size() * 2 : aliases.size());
+
+		aliases.stream()
+			.map(codes::get)
+			.filter(Objects::nonNull)
+			.forEach(result::add);
+
+		if (acceptLegacyAliases)
+			result.addAll(aliases);
+
+		return result;
+	}
+
+}
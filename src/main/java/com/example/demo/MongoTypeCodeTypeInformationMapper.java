@@ -0,0 +1,47 @@
+package com.example.demo;
+
+import org.springframework.data.convert.TypeInformationMapper;
+import org.springframework.data.mapping.Alias;
+import org.springframework.data.util.ClassTypeInformation;
+import org.springframework.data.util.TypeInformation;
+import org.springframework.lang.Nullable;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Writes {@link MongoTypeCodeRegistry} integer codes instead of string aliases into {@code _class} and resolves them
+ * back when reading. Legacy string aliases are left to the next mappers in chain.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+public class MongoTypeCodeTypeInformationMapper implements TypeInformationMapper {
+
+	private final MongoTypeCodeRegistry registry;
+
+	public MongoTypeCodeTypeInformationMapper(MongoTypeCodeRegistry registry) {
+		this.registry = registry;
+	}
+
+	@Nullable
+	@Override
+	public TypeInformation<?> resolveTypeFrom(Alias alias) {
+		Integer code = alias.mapTyped(Integer.class);
+		if (code==null)
+			return null;
+
+		String typeAlias = registry.findAlias(code);
+		String className = typeAlias!=null
+			? MongoClassInheritanceScanner.getInstance().findClassName(typeAlias)
+			: null;
+
+		return className!=null
+			? ClassTypeInformation.from(ClassUtils.resolveClassName(className, ClassUtils.getDefaultClassLoader()))
+			: null;
+	}
+
+	@Override
+	public Alias createAliasFor(TypeInformation<?> type) {
+		String typeAlias = MongoClassInheritanceScanner.getInstance().findAlias(type.getType());
+		return typeAlias!=null ? Alias.ofNullable(registry.findCode(typeAlias)) : Alias.NONE;
+	}
+
+}
@@ -0,0 +1,146 @@
+package com.example.demo;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.UpdateOptions;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Materialized per-alias document counts, stored in the {@value #COLLECTION} collection as
+ * {@code {_id: "collection:alias", collection: collection, alias: alias, count: count}}, so that {@code count()} of
+ * any type in the hierarchy is a sum of a few counters instead of a filtered count over the collection.
+ * <p>
+ * The counters are maintained by {@link InheritanceAwareSimpleMongoRepository} inserts, upserts and deletes and by
+ * {@link InheritanceAwareSimpleReactiveMongoRepository} inserts and deletes with atomic {@code $inc}, but not in a
+ * transaction with the document write itself, and writes bypassing the repositories (eg. {@code MongoOperations}
+ * calls or derived delete queries) or reactive saves upserting an unknown id aren't counted at all. That's why the counters can drift
+ * and there's {@link #reconcile(String)}, run on startup for collections without counters and optionally periodically.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+public class MongoTypeCounters implements DisposableBean {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(MongoTypeCounters.class);
+
+	public static final String COLLECTION = "_type_counters";
+
+	private static final String COUNTED_COLLECTION = "collection";
+	private static final String ALIAS = "alias";
+	private static final String COUNT = "count";
+	private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+
+	private final MongoDatabase database;
+	private final MongoCollection<Document> counters;
+	private final ScheduledExecutorService reconciler;
+
+	/**
+	 * @param reconcileInterval interval of periodic {@link #reconcileAll()} in milliseconds, {@code 0} to disable
+	 */
+	public MongoTypeCounters(MongoDatabase database, long reconcileInterval) {
+		this.database = database;
+		this.counters = database.getCollection(COLLECTION);
+		counters.createIndex(new Document(COUNTED_COLLECTION, 1));
+
+		for (String collection: MongoClassInheritanceScanner.getInstance().getCollections())
+			if (counters.count(new Document(COUNTED_COLLECTION, collection))==0)
+				reconcile(collection);
+
+		if (reconcileInterval > 0) {
+			reconciler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "mongo-type-counters-reconciler");
+				thread.setDaemon(true);
+				return thread;
+			});
+			reconciler.scheduleWithFixedDelay(this::reconcileAll, reconcileInterval, reconcileInterval,
+				TimeUnit.MILLISECONDS);
+		} else {
+			reconciler = null;
+		}
+	}
+
+	private static String id(String collection, String alias) {
+		return collection + ":" + alias;
+	}
+
+	/**
+	 * Atomically adds delta to the alias counter.
+	 */
+	public void increment(String collection, String alias, long delta) {
+		if (delta==0)
+			return;
+
+		counters.updateOne(new Document("_id", id(collection, alias)),
+			new Document("$inc", new Document(COUNT, delta))
+				.append("$setOnInsert", new Document(COUNTED_COLLECTION, collection).append(ALIAS, alias)),
+			UPSERT);
+	}
+
+	/**
+	 * Sum of the aliases counters.
+	 */
+	public long count(String collection, Collection<String> aliases) {
+		List<String> ids = aliases.stream().map(it -> id(collection, it)).collect(Collectors.toList());
+
+		long count = 0;
+		for (Document counter: counters.find(new Document("_id", new Document("$in", ids))))
+			count += counter.get(COUNT, Number.class).longValue();
+
+		return count;
+	}
+
+	/**
+	 * Rebuilds the collection counters from a {@code $group} on {@code _class}. Writes done concurrently with the
+	 * reconciliation can still be lost, so it's best run in quiet periods.
+	 */
+	public void reconcile(String collection) {
+		long start = System.currentTimeMillis();
+		MongoClassInheritanceScanner scanner = MongoClassInheritanceScanner.getInstance();
+
+		Map<String, Long> counts = new LinkedHashMap<>();
+		scanner.getCollectionAliases(collection).forEach(it -> counts.put(it, 0L));
+
+		for (Document group: database.getCollection(collection).aggregate(Collections.singletonList(
+				new Document("$group", new Document("_id", "$" + DiscriminatorCriteria.KEY)
+					.append(COUNT, new Document("$sum", 1)))))) {
+			String alias = scanner.findAliasOfDiscriminatorValue(group.get("_id"));
+			if (alias!=null)
+				counts.merge(alias, group.get(COUNT, Number.class).longValue(), Long::sum);
+		}
+
+		counts.forEach((alias, count) -> counters.replaceOne(new Document("_id", id(collection, alias)),
+			new Document(COUNTED_COLLECTION, collection).append(ALIAS, alias).append(COUNT, count),
+			UPSERT));
+
+		LOGGER.info("Reconciled {} type counters of {} collection in {} ms", counts.size(), collection,
+			System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * {@link #reconcile(String)} of all known collections.
+	 */
+	public void reconcileAll() {
+		for (String collection: MongoClassInheritanceScanner.getInstance().getCollections()) {
+			try {
+				reconcile(collection);
+			} catch (RuntimeException e) {
+				LOGGER.error("Can't reconcile type counters of " + collection + " collection", e);
+			}
+		}
+	}
+
+	@Override
+	public void destroy() {
+		if (reconciler!=null)
+			reconciler.shutdownNow();
+	}
+
+}
@@ -0,0 +1,140 @@
+package com.example.demo;
+
+import com.example.demo.MongoClassInheritanceScanner.TypeEntry;
+
+import java.util.*;
+
+/**
+ * Immutable inheritance graph of the concrete {@link org.springframework.data.annotation.TypeAlias} classes. Each
+ * concrete class gets a dense integer id and each known class name (including abstract and not aliased superclasses)
+ * gets a {@link BitSet} of its concrete subtypes ids, so all lookups are constant-time and work on class names only,
+ * without loading any classes.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+public class MongoTypeGraph {
+
+	private final String[] classNames;
+	private final String[] aliases;
+	private final Map<String, Integer> aliasIds = new HashMap<>();
+	private final Map<String, BitSet> subtypes = new HashMap<>();
+	private final Map<String, List<String>> subtypeClassNames = new HashMap<>();
+	private final Map<String, List<String>> subtypeAliases = new HashMap<>();
+	private final Map<String, BitSet> collections = new HashMap<>();
+	private final Set<String> collectionCovering = new HashSet<>();
+
+	public MongoTypeGraph(List<TypeEntry> entries) {
+		List<TypeEntry> concrete = new ArrayList<>();
+		entries.stream().filter(it -> !it.isAbstractType()).forEach(concrete::add);
+
+		classNames = new String[concrete.size()];
+		aliases = new String[concrete.size()];
+
+		for (int id = 0; id < concrete.size(); id++) {
+			TypeEntry entry = concrete.get(id);
+			classNames[id] = entry.getClassName();
+			aliases[id] = entry.getAlias();
+			aliasIds.putIfAbsent(entry.getAlias(), id);
+
+			collections.computeIfAbsent(entry.getCollection(), it -> new BitSet(concrete.size())).set(id);
+			subtypes.computeIfAbsent(entry.getClassName(), it -> new BitSet(concrete.size())).set(id);
+			for (String superClass: entry.getSuperClasses())
+				subtypes.computeIfAbsent(superClass, it -> new BitSet(concrete.size())).set(id);
+		}
+
+		subtypes.forEach((className, ids) -> {
+			List<String> names = new ArrayList<>(ids.cardinality());
+			List<String> typeAliases = new ArrayList<>(ids.cardinality());
+			ids.stream().forEach(id -> {
+				names.add(classNames[id]);
+				typeAliases.add(aliases[id]);
+			});
+			subtypeClassNames.put(className, Collections.unmodifiableList(names));
+			subtypeAliases.put(className, Collections.unmodifiableList(typeAliases));
+
+			// covering: all concrete types of all collections the class is stored in are its subtypes
+			boolean covering = ids.stream().mapToObj(id -> collections.get(concrete.get(id).getCollection()))
+				.allMatch(it -> {
+					BitSet others = (BitSet) it.clone();
+					others.andNot(ids);
+					return others.isEmpty();
+				});
+			if (covering)
+				collectionCovering.add(className);
+		});
+	}
+
+	/**
+	 * Number of concrete types in the graph.
+	 */
+	public int size() {
+		return classNames.length;
+	}
+
+	/**
+	 * All aliases in the graph.
+	 */
+	public List<String> getAliases() {
+		return Collections.unmodifiableList(Arrays.asList(aliases));
+	}
+
+	/**
+	 * Concrete class names of className, together with subclasses.
+	 */
+	public List<String> getClassNames(String className) {
+		return subtypeClassNames.getOrDefault(className, Collections.emptyList());
+	}
+
+	/**
+	 * Aliases of className, together with subclass aliases.
+	 */
+	public List<String> getAliases(String className) {
+		return subtypeAliases.getOrDefault(className, Collections.emptyList());
+	}
+
+	/**
+	 * Whether the alias denotes className or any of its subclasses.
+	 */
+	public boolean isSubtype(String alias, String className) {
+		Integer id = aliasIds.get(alias);
+		BitSet ids = subtypes.get(className);
+		return id!=null && ids!=null && ids.get(id);
+	}
+
+	/**
+	 * Collections of all concrete types.
+	 */
+	public Set<String> getCollections() {
+		return Collections.unmodifiableSet(collections.keySet());
+	}
+
+	/**
+	 * Aliases of all concrete types stored in the collection.
+	 */
+	public List<String> getCollectionAliases(String collection) {
+		BitSet ids = collections.get(collection);
+		if (ids==null)
+			return Collections.emptyList();
+
+		List<String> result = new ArrayList<>(ids.cardinality());
+		ids.stream().forEach(id -> result.add(aliases[id]));
+		return result;
+	}
+
+	/**
+	 * Whether className and its subclasses are the only types stored in their collection, ie. the discriminator
+	 * filter of className matches all documents of the collection.
+	 */
+	public boolean isCollectionCovering(String className) {
+		return collectionCovering.contains(className);
+	}
+
+	/**
+	 * Concrete class name for the alias or {@code null} if unknown.
+	 */
+	public String findClassName(String alias) {
+		Integer id = aliasIds.get(alias);
+		return id!=null ? classNames[id] : null;
+	}
+
+}
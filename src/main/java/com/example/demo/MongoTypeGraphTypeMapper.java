@@ -0,0 +1,75 @@
+package com.example.demo;
+
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.data.convert.EntityInstantiators;
+import org.springframework.data.convert.TypeInformationMapper;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.mongodb.core.convert.DefaultMongoTypeMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.util.ClassTypeInformation;
+import org.springframework.data.util.TypeInformation;
+import org.springframework.util.ClassUtils;
+
+import java.util.*;
+
+/**
+ * {@link DefaultMongoTypeMapper} resolving {@code _class} values of all types known to
+ * {@link MongoClassInheritanceScanner} (aliases and {@link MongoTypeCodeRegistry} type codes) with a single lookup
+ * in an immutable map built on startup, instead of asking the chain of {@link TypeInformationMapper}s and
+ * specializing the requested type for each read document. Unknown values and generic requested types are left to
+ * the default implementation.
+ * <p>
+ * Unlike {@link org.springframework.data.convert.MappingContextTypeInformationMapper}, which only knows the aliases of
+ * the entities already added to the mapping context, all scanned subtypes are resolvable from the first read.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+public class MongoTypeGraphTypeMapper extends DefaultMongoTypeMapper {
+
+	private final Map<Object, ClassTypeInformation<?>> types;
+
+	/**
+	 * @param mappers fallback mappers, also used for writing
+	 */
+	public MongoTypeGraphTypeMapper(List<? extends TypeInformationMapper> mappers) {
+		super(DEFAULT_TYPE_KEY, mappers);
+
+		MongoClassInheritanceScanner scanner = MongoClassInheritanceScanner.getInstance();
+		ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+		Map<Object, ClassTypeInformation<?>> types = new HashMap<>();
+
+		for (String alias: scanner.getAllAliases()) {
+			ClassTypeInformation<?> type = ClassTypeInformation.from(
+				ClassUtils.resolveClassName(scanner.findClassName(alias), classLoader));
+			types.put(alias, type);
+			for (Object value: scanner.getDiscriminatorValues(Collections.singletonList(alias)))
+				types.put(value, type);
+		}
+
+		this.types = Collections.unmodifiableMap(types);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> TypeInformation<? extends T> readType(Bson source, TypeInformation<T> basicType) {
+		if (source instanceof Document && basicType instanceof ClassTypeInformation) {
+			ClassTypeInformation<?> type = types.get(((Document) source).get(DEFAULT_TYPE_KEY));
+			if (type!=null && basicType.getType().isAssignableFrom(type.getType()))
+				return (TypeInformation<? extends T>) type;
+		}
+
+		return super.readType(source, basicType);
+	}
+
+	/**
+	 * Creates the persistent entities and instantiators of all known types upfront, so that the first reads of each
+	 * subtype neither wait for the mapping context write lock nor generate the instantiator classes.
+	 */
+	public void prewarm(MappingContext<? extends MongoPersistentEntity<?>, ?> mappingContext,
+			EntityInstantiators instantiators) {
+		for (ClassTypeInformation<?> type: new HashSet<>(types.values()))
+			instantiators.getInstantiatorFor(mappingContext.getRequiredPersistentEntity(type));
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.example.demo;
+
+import org.bson.Document;
+import org.springframework.data.mapping.PropertyHandler;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Field;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.*;
+
+/**
+ * Inclusion projection of the fields mapped by the type and all its subtypes known to
+ * {@link MongoClassInheritanceScanner}, together with {@code _id} and {@code _class}. Computed once per repository
+ * from the {@link MongoPersistentEntity} metadata.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ * @see InheritanceAwareProjection
+ */
+public class MongoTypeProjection {
+
+	private final Document fields;
+	private final Set<String> excluded;
+
+	protected MongoTypeProjection(Document fields, Set<String> excluded) {
+		this.fields = fields;
+		this.excluded = excluded;
+	}
+
+	/**
+	 * @param listView whether to leave out {@link InheritanceAwareProjection.ListViewExcluded} fields
+	 */
+	public static MongoTypeProjection of(Class<?> type,
+			MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext, boolean listView) {
+		Set<String> included = new LinkedHashSet<>();
+		Set<String> excluded = new LinkedHashSet<>();
+		included.add("_id");
+		included.add(DiscriminatorCriteria.KEY);
+
+		Set<Class<?>> types = new LinkedHashSet<>();
+		types.add(type);
+		for (Class<?> subtype: MongoClassInheritanceScanner.getInstance().getAllClasses(type.getName(), type.getClassLoader()))
+			types.add(subtype);
+
+		for (Class<?> it: types) {
+			mappingContext.getRequiredPersistentEntity(it).doWithProperties(
+				(PropertyHandler<MongoPersistentProperty>) property -> {
+					if (listView && property.isAnnotationPresent(InheritanceAwareProjection.ListViewExcluded.class))
+						excluded.add(property.getFieldName());
+					else
+						included.add(property.getFieldName());
+				});
+		}
+
+		included.removeAll(excluded);
+
+		Document fields = new Document();
+		included.forEach(it -> fields.put(it, 1));
+		return new MongoTypeProjection(fields, Collections.unmodifiableSet(excluded));
+	}
+
+	/**
+	 * Projection document, a new copy for each call.
+	 */
+	public Document getFields() {
+		return new Document(fields);
+	}
+
+	/**
+	 * Field names left out in the list view.
+	 */
+	public Set<String> getExcluded() {
+		return excluded;
+	}
+
+	/**
+	 * Applies the projection to the query, unless it already has its own fields.
+	 */
+	public Query applyTo(Query query) {
+		if (query.getFieldsObject().isEmpty()) {
+			Field queryFields = query.fields();
+			fields.keySet().forEach(queryFields::include);
+		}
+		return query;
+	}
+
+}
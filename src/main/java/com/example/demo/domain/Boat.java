@@ -1,12 +1,14 @@
 package com.example.demo.domain;
 
 import org.springframework.data.annotation.TypeAlias;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "things")
 @TypeAlias("boat")
 public class Boat extends Thing {
 
+    @Indexed
     private Integer length;
 
     public Integer getLength() {
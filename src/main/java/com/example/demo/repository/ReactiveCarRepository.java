@@ -0,0 +1,13 @@
+package com.example.demo.repository;
+
+import com.example.demo.domain.Car;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveCarRepository extends ReactiveThingRepository<Car> {
+
+    Flux<Car> findCarsByIdNotNull();
+
+    Mono<Long> countCarsByIdNotNull();
+
+}
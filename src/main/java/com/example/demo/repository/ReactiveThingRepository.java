@@ -0,0 +1,15 @@
+package com.example.demo.repository;
+
+import com.example.demo.domain.Thing;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveThingRepository<T extends Thing> extends ReactiveMongoRepository<T, String> {
+
+	Mono<T> findByName(String name);
+
+	@Query("{'name': ?0, '_class': #{#entityName}}")
+	Mono<T> queryByName(String name);
+
+}
@@ -0,0 +1,46 @@
+package org.springframework.data.mongodb.core;
+
+import com.mongodb.WriteConcern;
+import org.bson.Document;
+import org.springframework.lang.Nullable;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+
+/**
+ * Resolves the write concern of the writes executed directly on a collection the same way as {@link MongoTemplate}
+ * does for its own ones: the template write concern passed to its {@link WriteConcernResolver}, and acknowledged if the
+ * template uses {@link WriteResultChecking#EXCEPTION}. Placed in the template package, because
+ * {@link MongoTemplate#prepareWriteConcern(MongoAction)} is protected and the template write concern isn't exposed.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+public abstract class MongoTemplateWriteConcern {
+
+	private static final Field WRITE_CONCERN = ReflectionUtils.findField(MongoTemplate.class, "writeConcern");
+
+	static {
+		ReflectionUtils.makeAccessible(WRITE_CONCERN);
+	}
+
+	private MongoTemplateWriteConcern() {
+	}
+
+	/**
+	 * Write concern to use with {@link com.mongodb.client.MongoCollection#withWriteConcern(WriteConcern)}, or
+	 * {@code null} for the collection default one (like the template does), also if the operations aren't a
+	 * {@link MongoTemplate}.
+	 */
+	@Nullable
+	public static WriteConcern resolve(MongoOperations mongoOperations, MongoActionOperation operation,
+			String collectionName, Class<?> entityType, @Nullable Document document, @Nullable Document query) {
+		if (!(mongoOperations instanceof MongoTemplate))
+			return null;
+
+		MongoTemplate template = (MongoTemplate) mongoOperations;
+		WriteConcern defaultWriteConcern = (WriteConcern) ReflectionUtils.getField(WRITE_CONCERN, template);
+		return template.prepareWriteConcern(new MongoAction(defaultWriteConcern, operation, collectionName, entityType,
+			document, query));
+	}
+
+}
@@ -15,9 +15,11 @@
  */
 package org.springframework.data.mongodb.core.index;
 
+import com.example.demo.DiscriminatorCriteria;
 import com.example.demo.MongoClassInheritanceScanner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mapping.*;
@@ -26,6 +28,7 @@ import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexRes
 import org.springframework.data.mongodb.core.index.TextIndexDefinition.TextIndexDefinitionBuilder;
 import org.springframework.data.mongodb.core.index.TextIndexDefinition.TextIndexedFieldSpec;
 import org.springframework.data.mongodb.core.mapping.*;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.util.TypeInformation;
 import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
@@ -89,7 +92,9 @@ public class MongoPersistentEntityIndexResolver implements IndexResolver {
 		Assert.notNull(document, "Given entity is not collection root.");
 
 		final List<IndexDefinitionHolder> indexInformation = new ArrayList<>();
-		indexInformation.addAll(potentiallyCreateCompoundIndexDefinitions("", root.getCollection(), root));
+		potentiallyCreateCompoundIndexDefinitions("", root.getCollection(), root).forEach(it -> indexInformation.add(
+			potentiallyRestrictToDeclaringType(it, compoundIndexDeclaringClass(root),
+				StringUtils.hasText(it.getIndexOptions().getString("name")))));
 		indexInformation.addAll(potentiallyCreateTextIndexDefinition(root));
 
 		root.doWithProperties((PropertyHandler<MongoPersistentProperty>) property -> this
@@ -112,13 +117,83 @@ public class MongoPersistentEntityIndexResolver implements IndexResolver {
 			IndexDefinitionHolder indexDefinitionHolder = createIndexDefinitionHolderForProperty(
 				persistentProperty.getFieldName(), root.getCollection(), persistentProperty);
 			if (indexDefinitionHolder != null) {
-				indexes.add(indexDefinitionHolder);
+				Indexed indexed = persistentProperty.findAnnotation(Indexed.class);
+				indexes.add(potentiallyRestrictToDeclaringType(indexDefinitionHolder, declaringClass(persistentProperty),
+					indexed != null && StringUtils.hasText(indexed.name())));
 			}
 		} catch (CyclicPropertyReferenceException e) {
 			LOGGER.info(e.getMessage());
 		}
 	}
 
+	/**
+	 * Index declared on a subclass stored in its superclass collection covers only the subclass documents, so it gets
+	 * {@code partialFilterExpression} on the subclass discriminator. Partial filters don't support {@code $in} (before
+	 * mongo 6.0), so this works only for subclasses matched by a single {@code _class} value, ie. leaf types. Unless
+	 * explicitly named, the index name gets the discriminator suffix, because other subclasses can declare the same
+	 * field index.
+	 */
+	private IndexDefinitionHolder potentiallyRestrictToDeclaringType(IndexDefinitionHolder holder,
+																	 @Nullable Class<?> declaringClass, boolean explicitName) {
+
+		if (declaringClass == null || !(holder.getIndexDefinition() instanceof Index)
+			|| !isStoredInSuperclassCollection(declaringClass, holder.getCollection())) {
+			return holder;
+		}
+
+		Criteria criteria = MongoClassInheritanceScanner.getInstance().createInheritanceCritera(declaringClass);
+		if (!(criteria instanceof DiscriminatorCriteria)) {
+			return holder;
+		}
+
+		List<Object> values = ((DiscriminatorCriteria) criteria).getValues();
+		if (values.size() != 1) {
+			LOGGER.warn("Can't restrict index: {} declared on: {} to the subclass, partial index filter doesn't support " +
+				"multiple discriminator values: {}", holder.getIndexKeys().toJson(), declaringClass.getSimpleName(), values);
+			return holder;
+		}
+
+		Index index = (Index) holder.getIndexDefinition();
+		index.partial(PartialIndexFilter.of(criteria));
+
+		if (!explicitName) {
+			String name = StringUtils.hasText(index.getIndexOptions().getString("name"))
+				? index.getIndexOptions().getString("name")
+				: index.getIndexKeys().entrySet().stream()
+					.map(it -> it.getKey() + "_" + it.getValue())
+					.collect(Collectors.joining("_"));
+			index.named(name + "_" + values.get(0));
+		}
+
+		LOGGER.debug("Restricted index: {} declared on: {} to: {}", holder.getIndexKeys().toJson(),
+			declaringClass.getSimpleName(), criteria.getCriteriaObject().toJson());
+
+		return holder;
+	}
+
+	private boolean isStoredInSuperclassCollection(Class<?> type, String collection) {
+		Class<?> superclass = type.getSuperclass();
+		return superclass != null && superclass.isAnnotationPresent(Document.class)
+			&& collection.equals(mappingContext.getRequiredPersistentEntity(superclass).getCollection());
+	}
+
+	@Nullable
+	private Class<?> declaringClass(MongoPersistentProperty property) {
+		if (property.getField() != null) {
+			return property.getField().getDeclaringClass();
+		}
+
+		return property.getGetter() != null ? property.getGetter().getDeclaringClass() : null;
+	}
+
+	@Nullable
+	private Class<?> compoundIndexDeclaringClass(MongoPersistentEntity<?> root) {
+		Class<?> declaringClass = AnnotationUtils.findAnnotationDeclaringClass(CompoundIndexes.class, root.getType());
+		return declaringClass != null
+			? declaringClass
+			: AnnotationUtils.findAnnotationDeclaringClass(CompoundIndex.class, root.getType());
+	}
+
 	/**
 	 * Recursively resolve and inspect properties of given {@literal type} for indexes to be created.
 	 *
@@ -0,0 +1,135 @@
+package com.example.demo.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Compile time counterpart of the classpath scanning done by {@code MongoClassInheritanceScanner}. Collects all classes
+ * annotated with {@code @TypeAlias} and writes the {@value #INDEX_LOCATION} manifest, one line per class:
+ *
+ * <pre>
+ * class|alias|abstract|collection|superclass1,superclass2,...
+ * </pre>
+ *
+ * The superclass chain is written from the nearest superclass up to (excluding) {@link Object}, so that the scanner
+ * can build the inheritance hierarchy without loading any classes. {@code @TypeAlias} is {@code @Inherited}, so the
+ * subclasses without their own alias are written with the alias of the nearest aliased superclass, the same as the
+ * runtime scanning sees them.
+ * <p>
+ * The manifest is written for each compilation, even if there's no {@code @TypeAlias} class, because the scanner
+ * treats classpath roots without the manifest as not indexed and scans them.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+@SupportedAnnotationTypes("*")
+public class MongoTypeHierarchyIndexProcessor extends AbstractProcessor {
+
+	public static final String INDEX_LOCATION = "META-INF/mongo-type-hierarchy.idx";
+
+	static final String TYPE_ALIAS = "org.springframework.data.annotation.TypeAlias";
+	static final String DOCUMENT = "org.springframework.data.mongodb.core.mapping.Document";
+
+	private final Map<String, String> entries = new TreeMap<>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		TypeElement typeAlias = processingEnv.getElementUtils().getTypeElement(TYPE_ALIAS);
+		if (typeAlias!=null)
+			for (Element element: roundEnv.getElementsAnnotatedWith(typeAlias))
+				if (element.getKind()==ElementKind.CLASS)
+					addEntry((TypeElement) element);
+
+		if (roundEnv.processingOver())
+			writeIndex();
+
+		return false;
+	}
+
+	private void addEntry(TypeElement type) {
+		String className = processingEnv.getElementUtils().getBinaryName(type).toString();
+
+		List<String> superClasses = new ArrayList<>();
+		String collection = null;
+		String alias = null;
+		for (TypeElement it = type; it!=null; it = superClassOf(it)) {
+			if (it!=type)
+				superClasses.add(processingEnv.getElementUtils().getBinaryName(it).toString());
+			if (collection==null && findAnnotation(it, DOCUMENT)!=null)
+				collection = annotationValue(it, DOCUMENT, "collection");
+			if (alias==null && findAnnotation(it, TYPE_ALIAS)!=null)
+				alias = annotationValue(it, TYPE_ALIAS, "value");
+		}
+
+		// @Document is @Inherited, and without explicit collection spring falls back to the uncapitalized class name
+		if (collection==null || collection.isEmpty())
+			collection = Character.toLowerCase(type.getSimpleName().charAt(0)) + type.getSimpleName().toString().substring(1);
+
+		entries.put(className, String.join("|",
+			className,
+			alias,
+			String.valueOf(type.getModifiers().contains(Modifier.ABSTRACT)),
+			collection,
+			String.join(",", superClasses)));
+	}
+
+	private TypeElement superClassOf(TypeElement type) {
+		TypeMirror superclass = type.getSuperclass();
+		if (superclass.getKind()!=TypeKind.DECLARED)
+			return null;
+
+		TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+		return Object.class.getName().equals(element.getQualifiedName().toString()) ? null : element;
+	}
+
+	private AnnotationMirror findAnnotation(TypeElement type, String annotation) {
+		for (AnnotationMirror mirror: type.getAnnotationMirrors())
+			if (annotation.equals(((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString()))
+				return mirror;
+
+		return null;
+	}
+
+	private String annotationValue(TypeElement type, String annotation, String attribute) {
+		AnnotationMirror mirror = findAnnotation(type, annotation);
+		if (mirror!=null)
+			for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> it: mirror.getElementValues().entrySet())
+				if (attribute.contentEquals(it.getKey().getSimpleName()))
+					return String.valueOf(it.getValue().getValue());
+
+		return "";
+	}
+
+	private void writeIndex() {
+		try {
+			FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_LOCATION);
+			try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+				writer.write("# class|alias|abstract|collection|superclasses\n");
+				for (String line: entries.values())
+					writer.write(line + "\n");
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+				"Cannot write " + INDEX_LOCATION + ": " + e.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,50 @@
+package com.example.demo;
+
+import com.example.demo.domain.Boat;
+import com.example.demo.domain.Car;
+import com.example.demo.domain.Thing;
+import com.example.demo.repository.BoatRepository;
+import com.example.demo.repository.CarRepository;
+import org.junit.Before;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+/**
+ * Base of the tests of opt-in features. Each subclass enables its feature with
+ * {@code @SpringBootTest(properties = ...)} together with a database of its own, runs in its own application context,
+ * which is closed after the class, and starts each test with an empty {@code things} collection.
+ */
+@RunWith(SpringRunner.class)
+@ActiveProfiles("test")
+@DirtiesContext
+public abstract class AbstractMongoFeatureTests {
+
+    @Autowired protected CarRepository carRepository;
+    @Autowired protected BoatRepository boatRepository;
+    @Autowired protected MongoOperations mongoOperations;
+
+    @Before
+    public void removeThings() {
+        mongoOperations.remove(new Query(), Thing.class);
+    }
+
+    protected Car saveCar() {
+        Car honda = new Car();
+        honda.setModel("Honda Civic");
+        honda.setName("A Car");
+        return carRepository.save(honda);
+    }
+
+    protected Boat saveBoat() {
+        Boat enterprise = new Boat();
+        enterprise.setLength(10);
+        enterprise.setName("A Boat");
+        return boatRepository.save(enterprise);
+    }
+
+}
@@ -1,29 +1,82 @@
 package com.example.demo;
 
+import com.example.demo.MongoClassInheritanceScanner.TypeEntry;
 import com.example.demo.domain.Boat;
 import com.example.demo.domain.Car;
+import com.example.demo.domain.Note;
 import com.example.demo.domain.Thing;
 import com.example.demo.repository.BoatRepository;
 import com.example.demo.repository.CarRepository;
+import com.example.demo.repository.FacetBoatRepository;
+import com.example.demo.repository.NoteRepository;
+import com.example.demo.repository.ReactiveCarRepository;
+import com.example.demo.repository.ReactiveThingRepository;
 import com.example.demo.repository.ThingRepository;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoServerException;
+import com.mongodb.ServerAddress;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.MongoCollection;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.Document;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.springframework.aop.framework.Advised;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.core.MongoAction;
+import org.springframework.data.mongodb.core.MongoActionOperation;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.repository.support.MappingMongoEntityInformation;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest
 @ActiveProfiles("test")
 public class DemoApplicationTests {
 
-    @Autowired private ThingRepository thingRepository;
+    @Autowired private ThingRepository<Thing> thingRepository;
     @Autowired private CarRepository carRepository;
     @Autowired private BoatRepository boatRepository;
+    @Autowired private FacetBoatRepository facetBoatRepository;
+    @Autowired private NoteRepository noteRepository;
+    @Autowired private ReactiveThingRepository<Thing> reactiveThingRepository;
+    @Autowired private ReactiveCarRepository reactiveCarRepository;
+    @Autowired private MongoMappingContext mappingContext;
+    @Autowired private MongoOperations mongoOperations;
+    @Autowired private MongoDbFactory mongoDbFactory;
+    @Autowired private MongoInheritanceWarmup warmup;
 
     @Before
     public void initData() {
@@ -55,12 +108,94 @@ public class DemoApplicationTests {
         assertThat(carRepository.count()).isEqualTo(1);
         assertThat(boatRepository.count()).isEqualTo(1);
 
+        // the collection was empty on the startup, so also Thing repository keeps its discriminator filter
+        assertThat(warmup.getSnapshot().getCriteria(Thing.class)).isNotNull();
+        assertThat(warmup.getSnapshot().getCriteria(Car.class)).isNotNull();
+        assertThat(thingRepository.countExactly()).isEqualTo(3);
+        assertThat(carRepository.countExactly()).isEqualTo(1);
+
         // And the generated queries should work correctly as well
         assertThat(carRepository.findCarsByIdNotNull().size()).isEqualTo(1);
         assertThat(carRepository.countCarsByIdNotNull()).isEqualTo(1);
     }
 
+    @Test
+    public void checkCountBySubtype() {
+        assertThat(thingRepository.countBySubtype())
+            .containsOnly(entry(Thing.class, 1L), entry(Car.class, 1L), entry(Boat.class, 1L));
+        assertThat(thingRepository.countBySubtype(where("name").is("A Car"), null))
+            .containsOnlyKeys(Car.class);
+        assertThat(carRepository.countBySubtype()).containsOnlyKeys(Car.class);
+    }
+
+    @Test
+    public void checkCoveringVerification() {
+        MongoInheritanceWarmup warmup = new MongoInheritanceWarmup(mongoDbFactory);
+        MongoClassInheritanceScanner scanner = MongoClassInheritanceScanner.getInstance();
+        TypeEntry thing = TypeEntry.of(Thing.class);
+        assertThat(warmup.verifyCovering("empty-things", scanner.getDiscriminatorValues(scanner.getAliases(Thing.class))))
+            .isFalse();
+        assertThat(warmup.createType(scanner, thing).isCovering()).isTrue();
+        assertThat(warmup.createType(scanner, thing).getCriteria()).isNull();
+        assertThat(warmup.createType(scanner, thing).getDeleteCriteria()).isNotNull();
+        assertThat(warmup.createType(scanner, TypeEntry.of(Car.class)).isCovering()).isFalse();
+
+        MongoCollection<Document> things = mongoOperations.getCollection("things");
+        for (Document unknown: Arrays.asList(new Document("_class", Thing.class.getName()), new Document("name", "A Thing"))) {
+            things.insertOne(unknown);
+            try {
+                MongoInheritanceSnapshot.DocumentType type = warmup.createType(scanner, thing);
+                assertThat(type.isCovering()).isFalse();
+                assertThat(type.getCriteria()).isNotNull();
+            } finally {
+                things.deleteOne(new Document("_id", unknown.get("_id")));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void checkCoveringDeletesScoped() {
+        MongoClassInheritanceScanner scanner = MongoClassInheritanceScanner.getInstance();
+        MongoInheritanceSnapshot.DocumentType thing = new MongoInheritanceWarmup(mongoDbFactory)
+            .createType(scanner, TypeEntry.of(Thing.class));
+        assertThat(thing.isCovering()).isTrue();
+
+        InheritanceAwareSimpleMongoRepository<Thing, String> repository = new InheritanceAwareSimpleMongoRepository<>(
+            new MappingMongoEntityInformation<>((MongoPersistentEntity<Thing>) mappingContext
+                .getRequiredPersistentEntity(Thing.class)), mongoOperations);
+        repository.setSnapshot(new MongoInheritanceSnapshot(Collections.singletonMap(Thing.class, thing), 0));
+
+        // stored after the startup verification
+        MongoCollection<Document> things = mongoOperations.getCollection("things");
+        Document unknown = new Document("_class", "com.example.other.Thing").append("name", "An unknown Thing");
+        things.insertOne(unknown);
+        try {
+            repository.deleteById(unknown.getObjectId("_id").toHexString());
+            repository.deleteAll();
+            assertThat(thingRepository.count()).isZero();
+            assertThat(things.count(new Document("_id", unknown.get("_id")))).isEqualTo(1);
+        } finally {
+            things.deleteOne(new Document("_id", unknown.get("_id")));
+        }
+    }
+
     @SuppressWarnings("ConstantConditions")
+    @Test
+    public void checkWarmup() throws Exception {
+        MongoInheritanceSnapshot snapshot = warmup.getSnapshot();
+        assertThat(snapshot).isNotNull();
+
+        assertThat(snapshot.get(Thing.class).getClasses()).containsExactlyInAnyOrder(Thing.class, Car.class, Boat.class);
+        assertThat(snapshot.get(Thing.class).isCovering()).isFalse();
+        assertThat(snapshot.get(Car.class).getAliases()).containsExactly("car");
+
+        // the repositories were created after the warmup, with the snapshot criteria
+        Object carRepositoryTarget = ((Advised) carRepository).getTargetSource().getTarget();
+        assertThat(snapshot.get(Car.class).getCriteria()).isNotNull()
+            .isSameAs(ReflectionTestUtils.getField(carRepositoryTarget, "classCriteria"));
+    }
+
     @Test
     public void checkRepositoryInheritance() {
         assertThat(thingRepository.findByName("A Knife").get()).isOfAnyClassIn(Thing.class);
@@ -70,7 +205,278 @@ public class DemoApplicationTests {
         assertThat(thingRepository.queryByName("A Knife").get()).isOfAnyClassIn(Thing.class);
         assertThat(carRepository.queryByName("A Car").get()).isOfAnyClassIn(Car.class);
         assertThat(boatRepository.queryByName("A Boat").get()).isOfAnyClassIn(Boat.class);
+
+        assertThat(thingRepository.queryByName("A Car")).isEmpty();
+        assertThat(thingRepository.queryAnyByName("A Car").get()).isOfAnyClassIn(Car.class);
+        assertThat(thingRepository.queryAnyByName("A Boat").get()).isOfAnyClassIn(Boat.class);
+        assertThat(carRepository.queryAnyByName("A Boat")).isEmpty();
     }
 
-}
+    @Test
+    public void checkBatchDelete() {
+        List<Boat> boats = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Boat boat = new Boat();
+            boat.setName("A Boat to delete");
+            boats.add(boatRepository.save(boat));
+        }
+
+        assertThat(boatRepository.deleteInBatch(boats)).isEqualTo(3);
+        assertThat(thingRepository.count()).isEqualTo(3);
+    }
+
+    @Test
+    public void checkDeleteById() {
+        Boat boat = new Boat();
+        boat.setName("A Boat to delete");
+        boatRepository.save(boat);
+
+        // another type isn't removed through the car repository
+        carRepository.deleteById(boat.getId());
+        assertThat(boatRepository.existsById(boat.getId())).isTrue();
+
+        boatRepository.deleteById(boat.getId());
+        assertThat(boatRepository.existsById(boat.getId())).isFalse();
+        assertThat(thingRepository.count()).isEqualTo(3);
+    }
+
+    @Test
+    public void checkFindById() {
+        Boat boat = boatRepository.findByName("A Boat").get();
+
+        assertThat(boatRepository.findById(boat.getId()).get().getLength()).isEqualTo(10);
+        assertThat(thingRepository.findById(boat.getId()).get()).isOfAnyClassIn(Boat.class);
+        assertThat(carRepository.findById(boat.getId())).isEmpty();
+        assertThat(carRepository.existsById(boat.getId())).isFalse();
+        assertThat(boatRepository.existsById(boat.getId())).isTrue();
+    }
+
+    @Test
+    public void checkListViewProjection() {
+        Note note = new Note();
+        note.setTitle("A Note");
+        note.setText("A long text");
+        noteRepository.save(note);
+
+        try {
+            Note listed = noteRepository.findByTitle("A Note").get();
+            assertThat(listed.getTitle()).isEqualTo("A Note");
+            assertThat(listed.getText()).isNull();
+            assertThat(noteRepository.findAll(PageRequest.of(0, 10)).getContent())
+                .extracting(Note::getText).containsOnlyNulls();
+            assertThat(noteRepository.fetchExcluded(listed).getText()).isEqualTo("A long text");
+            assertThat(noteRepository.findById(note.getId()).get().getText()).isEqualTo("A long text");
+        } finally {
+            noteRepository.delete(note);
+        }
+    }
+
+    @Test
+    public void checkMixedBulkSave() {
+        Car honda = carRepository.findByName("A Car").get();
+        honda.setModel("Honda Accord");
+
+        Car fiat = new Car();
+        fiat.setName("A Car to delete");
+        fiat.setModel("Fiat 126p");
+
+        carRepository.saveAll(Arrays.asList(honda, fiat));
+
+        assertThat(fiat.getId()).isNotNull();
+        assertThat(carRepository.findById(honda.getId()).get().getModel()).isEqualTo("Honda Accord");
+        assertThat(carRepository.count()).isEqualTo(2);
+
+        carRepository.delete(fiat);
+        assertThat(carRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void checkBulkSaveWriteConcern() {
+        MongoTemplate template = (MongoTemplate) mongoOperations;
+        List<MongoAction> actions = new ArrayList<>();
+        template.setWriteConcern(WriteConcern.W1);
+        template.setWriteConcernResolver(action -> {
+            actions.add(action);
+            return WriteConcern.ACKNOWLEDGED;
+        });
+
+        try {
+            Car honda = carRepository.findByName("A Car").get();
+            Car fiat = new Car();
+            fiat.setName("A Car to delete");
+            carRepository.saveAll(Arrays.asList(honda, fiat));
+            carRepository.delete(fiat);
+        } finally {
+            template.setWriteConcernResolver(null);
+            template.setWriteConcern(null);
+        }
+
+        assertThat(actions)
+            .filteredOn(it -> it.getMongoActionOperation()==MongoActionOperation.BULK)
+            .extracting(MongoAction::getCollectionName, MongoAction::getEntityType, MongoAction::getDefaultWriteConcern)
+            .containsExactly(tuple("things", Car.class, WriteConcern.W1));
+    }
+
+    @Test
+    public void checkPaging() {
+        // sequential
+        Page<Thing> things = thingRepository.findAll(PageRequest.of(1, 2, Sort.by("name")));
+        assertThat(things.getTotalElements()).isEqualTo(3);
+        assertThat(things.getContent()).extracting(Thing::getName).containsExactly("A Knife");
+
+        // facet
+        Page<Boat> boats = facetBoatRepository.findAll(PageRequest.of(0, 2));
+        assertThat(boats.getTotalElements()).isEqualTo(1);
+        assertThat(boats.getContent()).hasOnlyElementsOfType(Boat.class);
+        assertThat(facetBoatRepository.findAll(PageRequest.of(1, 2)).getTotalElements()).isEqualTo(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void checkFacetPagingFallback() {
+        InheritanceAwareSimpleMongoRepository<Thing, String> repository = new InheritanceAwareSimpleMongoRepository<Thing, String>(
+                new MappingMongoEntityInformation<>((MongoPersistentEntity<Thing>) mappingContext
+                    .getRequiredPersistentEntity(Thing.class)), mongoOperations) {
+            @Override
+            protected boolean isTooLarge(MongoServerException e) {
+                // any failure of the aggregation, to fall back whatever the page size
+                return true;
+            }
+        };
+        repository.setPagingMode(InheritanceAwarePaging.Mode.FACET);
+
+        Page<Thing> page = repository.findAll(PageRequest.of(0, 2));
+        assertThat(page.getContent()).hasSize(2);
+        assertThat(page.getTotalElements()).isEqualTo(thingRepository.count());
+
+        assertThat(repository.isTooLarge(new MongoCommandException(new BsonDocument("ok", new BsonInt32(0))
+            .append("code", new BsonInt32(4031700)).append("codeName", new BsonString("BSONObjectTooLarge")),
+            new ServerAddress()))).isTrue();
+        assertThat(new InheritanceAwareSimpleMongoRepository<>(new MappingMongoEntityInformation<>(
+                (MongoPersistentEntity<Thing>) mappingContext.getRequiredPersistentEntity(Thing.class)), mongoOperations)
+            .isTooLarge(new MongoCommandException(new BsonDocument("ok", new BsonInt32(0))
+                .append("code", new BsonInt32(2)).append("codeName", new BsonString("BadValue")), new ServerAddress())))
+            .isFalse();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void checkConcurrentPaging() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            InheritanceAwareSimpleMongoRepository<Thing, String> repository = new InheritanceAwareSimpleMongoRepository<>(
+                new MappingMongoEntityInformation<>((MongoPersistentEntity<Thing>) mappingContext
+                    .getRequiredPersistentEntity(Thing.class)), mongoOperations);
+            repository.setPagingMode(InheritanceAwarePaging.Mode.CONCURRENT);
+            repository.setPagingExecutor(executor);
+
+            Page<Thing> things = repository.findAll(PageRequest.of(1, 2, Sort.by("name")));
+            assertThat(things.getTotalElements()).isEqualTo(3);
+            assertThat(things.getContent()).extracting(Thing::getName).containsExactly("A Knife");
+
+            // failed find cancels the count, so the executor is free again
+            assertThatThrownBy(() -> repository.findPage(where("name").is(new Document("$unknown", 1)), Thing.class, PageRequest.of(0, 2),
+                () -> {
+                    try {
+                        Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return 0;
+                }))
+                .isInstanceOf(DataAccessException.class);
+            executor.submit(() -> null).get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void checkKeysetScrolling() {
+        thingRepository.ensureKeysetIndex(Sort.by("name"));
+
+        KeysetSlice<Thing> first = thingRepository.scroll(Sort.by("name"), 2, null);
+        assertThat(first.getContent()).extracting(Thing::getName).containsExactly("A Boat", "A Car");
+        assertThat(first.hasNext()).isTrue();
+
+        KeysetSlice<Thing> second = thingRepository.scroll(Sort.by("name"), 2, first.getNextToken());
+        assertThat(second.getContent()).extracting(Thing::getName).containsExactly("A Knife");
+        assertThat(second.hasNext()).isFalse();
+
+        assertThat(carRepository.scroll(Sort.unsorted(), 2, null).getContent()).hasSize(1);
+    }
 
+    @Test
+    public void checkKeysetScrollingNullSortValues() {
+        List<Thing> unnamed = Arrays.asList(new Thing(), new Thing());
+        thingRepository.saveAll(unnamed);
+
+        try {
+            // nulls go first in ascending order and last in descending one
+            assertThat(scrollNames(Sort.by("name"))).containsExactly(null, null, "A Boat", "A Car", "A Knife");
+            assertThat(scrollNames(Sort.by(Sort.Direction.DESC, "name"))).containsExactly("A Knife", "A Car", "A Boat", null, null);
+        } finally {
+            thingRepository.deleteAll(unnamed);
+        }
+    }
+
+    private List<String> scrollNames(Sort sort) {
+        List<String> names = new ArrayList<>();
+        String token = null;
+        do {
+            KeysetSlice<Thing> slice = thingRepository.scroll(sort, 1, token);
+            slice.getContent().forEach(thing -> names.add(thing.getName()));
+            token = slice.getNextToken();
+        } while (token!=null);
+        return names;
+    }
+
+    @Test
+    public void checkKeysetTokenValidation() {
+        String injected = Base64.getUrlEncoder().encodeToString(
+            "{\"_id\": {\"$oid\": \"5a0000000000000000000000\"}, \"v\": {\"$ne\": null}}".getBytes(StandardCharsets.UTF_8));
+        assertThatThrownBy(() -> thingRepository.scroll(Sort.by("name"), 2, injected))
+            .isInstanceOf(IllegalArgumentException.class);
+
+        String regex = Base64.getUrlEncoder().encodeToString(
+            "{\"_id\": 1, \"v\": {\"$regex\": \".*\", \"$options\": \"\"}}".getBytes(StandardCharsets.UTF_8));
+        assertThatThrownBy(() -> thingRepository.scroll(Sort.by("name"), 2, regex))
+            .isInstanceOf(IllegalArgumentException.class);
+
+        assertThatThrownBy(() -> thingRepository.scroll(Sort.by("name"), 2, "not a token"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void checkStreaming() {
+        try (Stream<Thing> things = thingRepository.streamAll(Sort.by("name"))) {
+            assertThat(things.map(Thing::getClass)).containsExactly(Boat.class, Car.class, Thing.class);
+        }
+
+        try (Stream<Car> cars = carRepository.streamAll()) {
+            assertThat(cars).extracting(Car::getName).containsExactly("A Car");
+        }
+    }
+
+    @Test
+    public void checkReactiveRepositories() {
+        assertThat(reactiveThingRepository.count().block()).isEqualTo(3L);
+        assertThat(reactiveCarRepository.count().block()).isEqualTo(1L);
+        assertThat(reactiveCarRepository.findCarsByIdNotNull().collectList().block()).hasSize(1);
+        assertThat(reactiveCarRepository.countCarsByIdNotNull().block()).isEqualTo(1L);
+
+        assertThat(reactiveThingRepository.findByName("A Boat").block()).isOfAnyClassIn(Boat.class);
+        assertThat(reactiveCarRepository.findByName("A Boat").blockOptional()).isEmpty();
+        assertThat(reactiveCarRepository.queryByName("A Car").block()).isOfAnyClassIn(Car.class);
+    }
+
+    @Test
+    public void checkSubtypePartialIndexes() {
+        assertThat(new MongoPersistentEntityIndexResolver(mappingContext)
+                .resolveIndexForEntity(mappingContext.getRequiredPersistentEntity(Boat.class)))
+            .filteredOn(it -> it.getIndexKeys().containsKey("length"))
+            .extracting(it -> ((Document) it.getIndexOptions().get("partialFilterExpression")).toJson())
+            .containsExactly(new Document("_class", "boat").toJson());
+    }
+
+}
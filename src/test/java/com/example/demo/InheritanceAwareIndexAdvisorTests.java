@@ -0,0 +1,29 @@
+package com.example.demo;
+
+import com.example.demo.repository.CarRepository;
+import org.bson.Document;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "inheritance.mongo.index-advisor.enabled=true")
+@ActiveProfiles("test")
+public class InheritanceAwareIndexAdvisorTests {
+
+    @Autowired private InheritanceAwareIndexAdvisor indexAdvisor;
+
+    @Test
+    public void checkIndexAdvices() {
+        assertThat(indexAdvisor.getAdvices())
+            .filteredOn(it -> it.getRepositoryInterface()==CarRepository.class && it.getMethod().equals("findByName"))
+            .extracting(it -> it.getKeys().toJson())
+            .containsExactly(new Document("_class", 1).append("name", 1).toJson());
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.example.demo;
+
+import com.example.demo.domain.Car;
+import com.example.demo.repository.CarRepository;
+import com.example.demo.repository.ThingRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.query.ConvertingParameterAccessor;
+import org.springframework.data.mongodb.repository.query.MongoParametersParameterAccessor;
+import org.springframework.data.mongodb.repository.query.MongoQueryMethod;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.data.repository.core.support.DefaultRepositoryMetadata;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class InheritanceAwarePartTreeMongoQueryTests {
+
+    /**
+     * Not scanned as a repository, only the source of the query methods.
+     */
+    interface TemplateCarRepository extends ThingRepository<Car> {
+
+        List<Car> findByNameNot(String name);
+
+        long countByNameNot(String name);
+
+        List<Car> findByModelIsNull();
+
+        List<Car> findByNameLike(String name);
+
+        List<Car> findByNameOrModel(String name, String model);
+
+        List<Car> findByNameIgnoreCase(String name);
+
+    }
+
+    @Document(collection = "template-flags")
+    static class Flag {
+
+        @Id private String id;
+        private boolean active;
+
+    }
+
+    interface FlagRepository extends MongoRepository<Flag, String> {
+
+        List<Flag> findByActiveTrue();
+
+        List<Flag> findByActiveFalse();
+
+        long countByActiveTrue();
+
+    }
+
+    @Autowired private MongoOperations mongoOperations;
+    @Autowired private MongoMappingContext mappingContext;
+    @Autowired private MongoInheritanceWarmup warmup;
+
+    @Test
+    public void checkSimpleProperty() throws NoSuchMethodException {
+        assertTemplateMatchesCreator(queryMethod(CarRepository.class, "findByName", String.class), "A Car");
+    }
+
+    @Test
+    public void checkNotNull() throws NoSuchMethodException {
+        assertTemplateMatchesCreator(queryMethod(CarRepository.class, "findCarsByIdNotNull"));
+        assertTemplateMatchesCreator(queryMethod(CarRepository.class, "countCarsByIdNotNull"));
+    }
+
+    @Test
+    public void checkNegatingSimpleProperty() throws NoSuchMethodException {
+        assertTemplateMatchesCreator(queryMethod(TemplateCarRepository.class, "findByNameNot", String.class), "A Car");
+        assertTemplateMatchesCreator(queryMethod(TemplateCarRepository.class, "countByNameNot", String.class), "A Car");
+    }
+
+    @Test
+    public void checkIsNull() throws NoSuchMethodException {
+        assertTemplateMatchesCreator(queryMethod(TemplateCarRepository.class, "findByModelIsNull"));
+    }
+
+    @Test
+    public void checkTrueAndFalse() throws NoSuchMethodException {
+        assertTemplateMatchesCreator(queryMethod(FlagRepository.class, "findByActiveTrue"));
+        assertTemplateMatchesCreator(queryMethod(FlagRepository.class, "findByActiveFalse"));
+        assertTemplateMatchesCreator(queryMethod(FlagRepository.class, "countByActiveTrue"));
+    }
+
+    @Test
+    public void checkFallback() throws NoSuchMethodException {
+        assertFallsBackToCreator(queryMethod(TemplateCarRepository.class, "findByNameLike", String.class), "A*");
+        assertFallsBackToCreator(queryMethod(TemplateCarRepository.class, "findByNameOrModel", String.class,
+            String.class), "A Car", "Honda Civic");
+        assertFallsBackToCreator(queryMethod(TemplateCarRepository.class, "findByNameIgnoreCase", String.class), "a car");
+    }
+
+    protected MongoQueryMethod queryMethod(Class<?> repository, String name, Class<?>... parameterTypes)
+            throws NoSuchMethodException {
+        return new MongoQueryMethod(repository.getMethod(name, parameterTypes), new DefaultRepositoryMetadata(repository),
+            new SpelAwareProxyProjectionFactory(), mappingContext);
+    }
+
+    protected ConvertingParameterAccessor accessor(MongoQueryMethod method, Object... values) {
+        return new ConvertingParameterAccessor(mongoOperations.getConverter(),
+            new MongoParametersParameterAccessor(method, values));
+    }
+
+    /**
+     * Both the find and the count query bound to the template are the same as the ones created from the tree.
+     */
+    protected void assertTemplateMatchesCreator(MongoQueryMethod method, Object... values) {
+        InheritanceAwarePartTreeMongoQuery template = new InheritanceAwarePartTreeMongoQuery(method, mongoOperations,
+            null, true, warmup.getSnapshot());
+        InheritanceAwarePartTreeMongoQuery creator = new InheritanceAwarePartTreeMongoQuery(method, mongoOperations,
+            null, false, warmup.getSnapshot());
+        assertThat(ReflectionTestUtils.getField(template, "template")).isNotNull();
+
+        Query query = template.createQuery(accessor(method, values));
+        Query expected = creator.createQuery(accessor(method, values));
+        assertThat(query.getQueryObject()).isEqualTo(expected.getQueryObject());
+        assertThat(query.getSortObject()).isEqualTo(expected.getSortObject());
+        assertThat(query.getLimit()).isEqualTo(expected.getLimit());
+
+        assertThat(template.createCountQuery(accessor(method, values)).getQueryObject())
+            .isEqualTo(creator.createCountQuery(accessor(method, values)).getQueryObject());
+    }
+
+    protected void assertFallsBackToCreator(MongoQueryMethod method, Object... values) {
+        InheritanceAwarePartTreeMongoQuery query = new InheritanceAwarePartTreeMongoQuery(method, mongoOperations,
+            null, true, warmup.getSnapshot());
+        assertThat(ReflectionTestUtils.getField(query, "template")).isNull();
+        // compared as JSON, the regular expressions aren't equal otherwise
+        assertThat(query.createQuery(accessor(method, values)).getQueryObject().toJson()).isEqualTo(
+            new InheritanceAwarePartTreeMongoQuery(method, mongoOperations, null, false, warmup.getSnapshot())
+                .createQuery(accessor(method, values)).getQueryObject().toJson());
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.example.demo;
+
+import com.example.demo.MongoClassInheritanceScanner.TypeEntry;
+import com.example.demo.domain.Boat;
+import com.example.demo.domain.Car;
+import com.example.demo.domain.Thing;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class MongoClassInheritanceScannerTests {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void checkIndexMatchesScanning() {
+        ClassLoader classLoader = getClass().getClassLoader();
+        MongoClassInheritanceScanner indexed = new MongoClassInheritanceScanner(classLoader, true);
+        MongoClassInheritanceScanner scanned = new MongoClassInheritanceScanner(classLoader, false);
+
+        assertThat(indexed.entries.stream().map(this::format).collect(Collectors.toList()))
+            .containsExactlyInAnyOrderElementsOf(scanned.entries.stream().map(this::format).collect(Collectors.toList()))
+            .contains("com.example.demo.domain.Car|car|false|things|com.example.demo.domain.Thing");
+        assertThat(indexed.getAliases(Thing.class)).containsExactlyInAnyOrder("thing", "car", "boat");
+    }
+
+    @Test
+    public void checkMergedIndexes() throws IOException {
+        // the same class in two manifests, the first one wins
+        ClassLoader classLoader = withIndexes(
+            index("com.example.demo.domain.Thing|thing|false|things|",
+                "com.example.demo.domain.Car|car|false|things|com.example.demo.domain.Thing"),
+            index("com.example.demo.domain.Car|other|false|things|com.example.demo.domain.Thing",
+                "com.example.demo.domain.Boat|boat|false|things|com.example.demo.domain.Thing"));
+
+        assertThat(new MongoClassInheritanceScanner(classLoader, true).loadIndex(classLoader))
+            .extracting(TypeEntry::getClassName, TypeEntry::getAlias)
+            .containsExactly(
+                tuple(Thing.class.getName(), "thing"),
+                tuple(Car.class.getName(), "car"),
+                tuple(Boat.class.getName(), "boat"));
+    }
+
+    @Test
+    public void checkPartialIndex() throws IOException {
+        // the classpath roots of the domain classes have no manifest now, so they're scanned
+        ClassLoader classLoader = withIndexes(index("com.example.demo.domain.Thing|thing|false|things|"));
+        MongoClassInheritanceScanner scanner = new MongoClassInheritanceScanner(classLoader, true);
+
+        assertThat(scanner.findNotIndexedRoots(classLoader, true)).isNotEmpty();
+        assertThat(scanner.getAliases(Thing.class)).containsExactlyInAnyOrder("thing", "car", "boat");
+        assertThat(scanner.getAliases(Car.class)).containsExactly("car");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checkInvalidIndex() throws IOException {
+        ClassLoader classLoader = withIndexes(index("com.example.demo.domain.Thing|thing"));
+        new MongoClassInheritanceScanner(classLoader, true);
+    }
+
+    @Test
+    public void checkClear() {
+        ClassLoader classLoader = getClass().getClassLoader();
+        MongoClassInheritanceScanner scanner = new MongoClassInheritanceScanner(classLoader, true);
+        assertThat(scanner.getAllClasses(Thing.class.getName(), classLoader)).contains(Thing.class, Car.class, Boat.class);
+
+        scanner.clear(new ClassLoader(classLoader) {});
+        assertThat(scanner.allClasses).containsKey(classLoader);
+
+        scanner.clear(classLoader);
+        assertThat(scanner.allClasses).doesNotContainKey(classLoader);
+    }
+
+    private String format(TypeEntry entry) {
+        return String.join("|", entry.getClassName(), entry.getAlias(), String.valueOf(entry.isAbstractType()),
+            entry.getCollection(), String.join(",", entry.getSuperClasses()));
+    }
+
+    private URL index(String... lines) throws IOException {
+        File root = folder.newFolder();
+        File index = new File(root, MongoClassInheritanceScanner.INDEX_LOCATION);
+        assertThat(index.getParentFile().mkdirs()).isTrue();
+        Files.write(index.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+        return index.toURI().toURL();
+    }
+
+    /**
+     * Replaces the manifests of the test classpath with the given ones.
+     */
+    private ClassLoader withIndexes(URL... indexes) {
+        return new ClassLoader(getClass().getClassLoader()) {
+            @Override
+            public Enumeration<URL> getResources(String name) throws IOException {
+                return MongoClassInheritanceScanner.INDEX_LOCATION.equals(name)
+                    ? Collections.enumeration(Arrays.asList(indexes))
+                    : super.getResources(name);
+            }
+        };
+    }
+
+}
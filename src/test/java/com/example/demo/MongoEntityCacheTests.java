@@ -0,0 +1,126 @@
+package com.example.demo;
+
+import com.example.demo.domain.Boat;
+import com.example.demo.domain.Thing;
+import com.example.demo.repository.ReactiveThingRepository;
+import com.example.demo.repository.ThingRepository;
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+    "inheritance.mongo.entity-cache.enabled=true",
+    "spring.data.mongodb.database=entity-cache"
+})
+public class MongoEntityCacheTests extends AbstractMongoFeatureTests {
+
+    @Autowired private ThingRepository<Thing> thingRepository;
+    @Autowired private ReactiveThingRepository<Thing> reactiveThingRepository;
+    @Autowired private MongoEntityCache entityCache;
+
+    private Boat boat;
+
+    @Before
+    public void initData() {
+        entityCache.evictAll("things");
+        boat = saveBoat();
+    }
+
+    @Test
+    public void checkEntityCache() {
+        assertThat(boatRepository.findById(boat.getId())).isPresent();
+
+        long hits = entityCache.getStats().hitCount();
+        assertThat(thingRepository.findById(boat.getId()).get()).isOfAnyClassIn(Boat.class);
+        assertThat(carRepository.findById(boat.getId())).isEmpty();
+        assertThat(carRepository.existsById(boat.getId())).isFalse();
+        assertThat(boatRepository.existsById(boat.getId())).isTrue();
+        assertThat(entityCache.getStats().hitCount()).isEqualTo(hits + 4);
+
+        boat.setLength(12);
+        boatRepository.save(boat);
+        assertThat(boatRepository.findById(boat.getId()).get().getLength()).isEqualTo(12);
+
+        boatRepository.deleteById(boat.getId());
+        assertThat(boatRepository.findById(boat.getId())).isEmpty();
+        assertThat(entityCache.size()).isZero();
+    }
+
+    @Test
+    public void checkBatchDeleteEviction() {
+        assertThat(boatRepository.findById(boat.getId())).isPresent();
+        assertThat(entityCache.size()).isEqualTo(1);
+
+        boatRepository.deleteInBatch(Collections.singletonList(boat));
+        assertThat(entityCache.size()).isZero();
+        assertThat(thingRepository.findById(boat.getId())).isEmpty();
+    }
+
+    @Test
+    public void checkStaleReadNotCached() {
+        // a read started before the write, finished after its eviction
+        long generation = entityCache.getGeneration("things", boat.getId());
+        Document stale = new Document("_id", boat.getId()).append("name", "A stale Boat");
+        entityCache.evict("things", boat.getId());
+        entityCache.put("things", boat.getId(), stale, generation);
+        assertThat(entityCache.get("things", boat.getId())).isNull();
+
+        entityCache.put("things", boat.getId(), stale, entityCache.getGeneration("things", boat.getId()));
+        assertThat(entityCache.get("things", boat.getId())).isNotNull();
+    }
+
+    @Test
+    public void checkConcurrentReadsAndWrites() throws Exception {
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CountDownLatch started = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> readers = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            readers.add(executor.submit(() -> {
+                started.countDown();
+                while (writing.get())
+                    boatRepository.findById(boat.getId());
+            }));
+        }
+
+        started.await();
+        for (int i = 1; i <= 200; i++) {
+            boat.setLength(i);
+            boatRepository.save(boat);
+        }
+        writing.set(false);
+        for (Future<?> reader: readers)
+            reader.get();
+        executor.shutdown();
+
+        assertThat(boatRepository.findById(boat.getId()).get().getLength()).isEqualTo(200);
+    }
+
+    @Test
+    public void checkReactiveEviction() {
+        assertThat(boatRepository.findById(boat.getId())).isPresent();
+
+        boat.setLength(12);
+        reactiveThingRepository.save(boat).block();
+        assertThat(entityCache.size()).isZero();
+        assertThat(boatRepository.findById(boat.getId()).get().getLength()).isEqualTo(12);
+
+        reactiveThingRepository.deleteById(boat.getId()).block();
+        assertThat(entityCache.size()).isZero();
+        assertThat(boatRepository.findById(boat.getId())).isEmpty();
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.example.demo;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+    "inheritance.mongo.explain-sampler.enabled=true",
+    "inheritance.mongo.explain-sampler.rate=1",
+    "spring.data.mongodb.database=explain-sampler"
+})
+public class MongoExplainSamplerTests extends AbstractMongoFeatureTests {
+
+    @Autowired private MongoExplainSampler explainSampler;
+
+    @Before
+    public void initData() {
+        saveCar();
+    }
+
+    @Test
+    public void checkExplainSampling() throws Exception {
+        carRepository.findByName("A Car");
+        assertThat(explainSampler.awaitExplained(10, TimeUnit.SECONDS)).isTrue();
+
+        // the name has only a text index, so the equality filter is a collection scan
+        assertThat(explainSampler.getFindings())
+            .filteredOn(it -> it.getMethod().equals("CarRepository.findByName"))
+            .hasSize(1)
+            .allMatch(MongoExplainSampler.Finding::isCollectionScan)
+            .allMatch(it -> it.getAliases().equals(Collections.singletonList("car")));
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.example.demo;
+
+import com.example.demo.domain.Thing;
+import com.example.demo.repository.ThingRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+    "inheritance.mongo.metrics.enabled=true",
+    "spring.data.mongodb.database=repository-metrics"
+})
+public class MongoRepositoryMetricsTests extends AbstractMongoFeatureTests {
+
+    @TestConfiguration
+    static class MetricsConfiguration {
+
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+    }
+
+    @Autowired private ThingRepository<Thing> thingRepository;
+    @Autowired private MeterRegistry meterRegistry;
+
+    @Before
+    public void initData() {
+        saveCar();
+        saveBoat();
+    }
+
+    @Test
+    public void checkRepositoryMetrics() {
+        // the meters are registered on the first call
+        carRepository.findByName("A Car");
+        Timer timer = meterRegistry.get(MongoRepositoryMetrics.INVOCATIONS)
+            .tags("repository", "CarRepository", "method", "findByName", "outcome", "success").timer();
+        long count = timer.count();
+        carRepository.findByName("A Car");
+        carRepository.findByName("A Boat");
+        assertThat(timer.count()).isEqualTo(count + 2);
+
+        thingRepository.findAll();
+        DistributionSummary documents = meterRegistry.get(MongoRepositoryMetrics.DOCUMENTS)
+            .tags("repository", "ThingRepository", "method", "findAll").summary();
+        double total = documents.totalAmount();
+        thingRepository.findAll();
+        assertThat(documents.totalAmount()).isEqualTo(total + 2);
+
+        // the collection was empty on the startup, so also Thing repository filters by all its aliases
+        assertThat(meterRegistry.get(MongoRepositoryMetrics.ALIASES)
+            .tags("repository", "ThingRepository", "entity", "Thing", "collection", "things").summary().max())
+            .isEqualTo(3);
+        assertThat(meterRegistry.get(MongoRepositoryMetrics.ALIASES)
+            .tags("repository", "CarRepository", "method", "findByName").summary().max()).isEqualTo(1);
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.example.demo;
+
+import com.example.demo.domain.Boat;
+import com.example.demo.domain.Car;
+import com.example.demo.domain.Thing;
+import com.example.demo.repository.CarRepository;
+import com.example.demo.repository.ThingRepository;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.repository.query.MongoQueryMethod;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.data.repository.core.support.DefaultRepositoryMetadata;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+    "inheritance.mongo.type-codes.enabled=true",
+    "spring.data.mongodb.database=type-codes"
+})
+public class MongoTypeCodeTests extends AbstractMongoFeatureTests {
+
+    @Autowired private ThingRepository<Thing> thingRepository;
+    @Autowired private MongoTypeCodeRegistry typeCodes;
+    @Autowired private MongoDbFactory mongoDbFactory;
+    @Autowired private MongoMappingContext mappingContext;
+    @Autowired private MongoInheritanceWarmup warmup;
+
+    private int carCode;
+    private int boatCode;
+
+    @Before
+    public void initData() {
+        carCode = typeCodes.findCode("car");
+        boatCode = typeCodes.findCode("boat");
+        saveCar();
+    }
+
+    @Test
+    public void checkCodeAssignment() {
+        assertThat(Arrays.asList(typeCodes.findCode("thing"), carCode, boatCode)).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(typeCodes.findAlias(carCode)).isEqualTo("car");
+        assertThat(MongoClassInheritanceScanner.getInstance().getTypeCodes()).isSameAs(typeCodes);
+
+        // codes are stable between startups
+        MongoTypeCodeRegistry restarted = new MongoTypeCodeRegistry(mongoDbFactory.getDb(),
+            Arrays.asList("thing", "car", "boat"), true);
+        assertThat(restarted.findCode("car")).isEqualTo(carCode);
+        assertThat(restarted.findCode("boat")).isEqualTo(boatCode);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void checkDuplicateKeyRetry() {
+        MongoDatabase database = mongoDbFactory.getDb("type-codes-race");
+        MongoCollection<Document> collection = database.getCollection(MongoTypeCodeRegistry.COLLECTION);
+
+        // other instance registers the same code just before us
+        AtomicBoolean raced = new AtomicBoolean();
+        MongoCollection<Document> racing = (MongoCollection<Document>) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] {MongoCollection.class}, (proxy, method, args) -> {
+                if (method.getName().equals("insertOne") && args.length==1 && raced.compareAndSet(false, true))
+                    collection.insertOne(new Document("_id", ((Document) args[0]).get("_id")).append("alias", "other"));
+                return invoke(method, collection, args);
+            });
+        MongoDatabase racingDatabase = (MongoDatabase) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] {MongoDatabase.class}, (proxy, method, args) ->
+                method.getName().equals("getCollection") ? racing : invoke(method, database, args));
+
+        try {
+            MongoTypeCodeRegistry registry = new MongoTypeCodeRegistry(racingDatabase,
+                Arrays.asList("thing", "car"), true);
+
+            assertThat(raced).isTrue();
+            assertThat(registry.findCode("other")).isEqualTo(1);
+            assertThat(registry.findCode("thing")).isEqualTo(2);
+            assertThat(registry.findCode("car")).isEqualTo(3);
+        } finally {
+            database.drop();
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    @Test
+    public void checkWriteCodes() {
+        Document stored = mongoOperations.getCollection("things").find(new Document("name", "A Car")).first();
+        assertThat(stored.get(DiscriminatorCriteria.KEY)).isEqualTo(carCode);
+
+        assertThat(thingRepository.findByName("A Car").get()).isInstanceOf(Car.class);
+        assertThat(carRepository.findByName("A Car").get().getModel()).isEqualTo("Honda Civic");
+    }
+
+    @Test
+    public void checkReadLegacyAliases() {
+        mongoOperations.getCollection("things").insertOne(new Document("_class", "boat")
+            .append("name", "A Legacy Boat").append("length", 5));
+
+        assertThat(thingRepository.findByName("A Legacy Boat").get()).isInstanceOf(Boat.class);
+        assertThat(boatRepository.findByName("A Legacy Boat").get().getLength()).isEqualTo(5);
+        assertThat(boatRepository.countExactly()).isEqualTo(1);
+        assertThat(carRepository.countExactly()).isEqualTo(1);
+        assertThat(thingRepository.countExactly()).isEqualTo(2);
+    }
+
+    @Test
+    public void checkCriteria() {
+        assertThat(warmup.getSnapshot().getCriteria(Car.class).getCriteriaObject().toJson())
+            .isEqualTo(new Document(DiscriminatorCriteria.KEY, new Document("$in", Arrays.asList(carCode, "car"))).toJson());
+        assertThat(MongoClassInheritanceScanner.getInstance().getDiscriminatorValues(Arrays.asList("car", "boat")))
+            .containsExactly(carCode, boatCode, "car", "boat");
+        assertThat(MongoClassInheritanceScanner.getInstance().createInheritanceCritera(Arrays.asList("car", "boat"))
+            .getCriteriaObject().toJson()).isEqualTo(new Document(DiscriminatorCriteria.KEY,
+                new Document("$in", Arrays.asList(carCode, boatCode, "car", "boat"))).toJson());
+        assertThat(MongoClassInheritanceScanner.getInstance().findAliasOfDiscriminatorValue(boatCode)).isEqualTo("boat");
+    }
+
+    @Test
+    public void checkEnhanceQuery() throws NoSuchMethodException {
+        MongoQueryMethod method = new MongoQueryMethod(CarRepository.class.getMethod("queryByName", String.class),
+            new DefaultRepositoryMetadata(CarRepository.class), new SpelAwareProxyProjectionFactory(), mappingContext);
+
+        assertThat(InheritanceAwareMongoRepositoryFactory.enhanceQuery("{'_class': #{#entityName}}", method))
+            .isEqualTo("{'_class': " + new Document("$in", Arrays.asList(carCode, "car")).toJson() + "}");
+        assertThat(carRepository.queryByName("A Car")).isPresent();
+        assertThat(thingRepository.queryAnyByName("A Car")).isPresent();
+    }
+
+}
@@ -0,0 +1,144 @@
+package com.example.demo;
+
+import com.example.demo.domain.Boat;
+import com.example.demo.domain.Car;
+import com.example.demo.domain.Thing;
+import com.example.demo.repository.ReactiveCarRepository;
+import com.example.demo.repository.ReactiveThingRepository;
+import com.example.demo.repository.ThingRepository;
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+    "inheritance.mongo.counters.enabled=true",
+    "spring.data.mongodb.database=type-counters"
+})
+public class MongoTypeCountersTests extends AbstractMongoFeatureTests {
+
+    @Autowired private ThingRepository<Thing> thingRepository;
+    @Autowired private ReactiveThingRepository<Thing> reactiveThingRepository;
+    @Autowired private ReactiveCarRepository reactiveCarRepository;
+    @Autowired private MongoTypeCounters typeCounters;
+
+    private Boat boat;
+
+    @Before
+    public void initData() {
+        typeCounters.reconcile("things");
+
+        Thing thing = new Thing();
+        thing.setName("A Knife");
+        thingRepository.save(thing);
+
+        saveCar();
+        boat = saveBoat();
+    }
+
+    @Test
+    public void checkTypeCountersUnderConcurrentWrites() throws Exception {
+        List<Boat> boats = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 25; i++) {
+                    Boat boat = new Boat();
+                    boat.setName("A concurrent Boat");
+                    boats.add(boatRepository.save(boat));
+                    if (i % 2 == 0)
+                        boatRepository.delete(boat);
+                }
+            }));
+        }
+        for (Future<?> future: futures)
+            future.get();
+        executor.shutdown();
+
+        assertThat(boatRepository.count()).isEqualTo(boatRepository.countExactly()).isEqualTo(1 + 4 * 12);
+        assertThat(thingRepository.count()).isEqualTo(3 + 4 * 12);
+
+        boatRepository.deleteInBatch(boats);
+        assertThat(boatRepository.count()).isEqualTo(1);
+
+        typeCounters.reconcile("things");
+        assertThat(boatRepository.count()).isEqualTo(1);
+        assertThat(thingRepository.count()).isEqualTo(3);
+    }
+
+    @Test
+    public void checkUpsertCounting() {
+        // not new, but there's no such document
+        Car car = new Car();
+        car.setId(new ObjectId().toHexString());
+        car.setName("An upserted Car");
+        carRepository.save(car);
+
+        assertThat(carRepository.count()).isEqualTo(carRepository.countExactly()).isEqualTo(2);
+
+        // an update isn't counted again
+        car.setModel("Fiat 126p");
+        carRepository.save(car);
+        assertThat(carRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    public void checkPartialBulkSaveCounting() {
+        Car first = new Car();
+        first.setName("A bulk Car");
+        Car clashing = new Car();
+        clashing.setId(boat.getId());
+        clashing.setName("A Car with the Boat id");
+        Car last = new Car();
+        last.setName("Another bulk Car");
+
+        assertThatThrownBy(() -> carRepository.saveAll(Arrays.asList(first, clashing, last)));
+
+        assertThat(carRepository.count()).isEqualTo(carRepository.countExactly()).isEqualTo(3);
+        assertThat(boatRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void checkReactiveCounting() {
+        Car fiat = new Car();
+        fiat.setName("A reactive Car");
+        reactiveCarRepository.save(fiat).block();
+
+        Car skoda = new Car();
+        skoda.setName("Another reactive Car");
+        Boat yacht = new Boat();
+        yacht.setName("A reactive Boat");
+        reactiveThingRepository.saveAll(Arrays.asList(skoda, yacht)).blockLast();
+
+        assertThat(carRepository.count()).isEqualTo(carRepository.countExactly()).isEqualTo(3);
+        assertThat(boatRepository.count()).isEqualTo(boatRepository.countExactly()).isEqualTo(2);
+
+        reactiveCarRepository.deleteById(fiat.getId()).block();
+        // another type isn't removed through the car repository
+        reactiveCarRepository.deleteById(yacht.getId()).block();
+        assertThat(carRepository.count()).isEqualTo(carRepository.countExactly()).isEqualTo(2);
+        assertThat(boatRepository.count()).isEqualTo(boatRepository.countExactly()).isEqualTo(2);
+
+        reactiveThingRepository.deleteAll(Arrays.asList(skoda, yacht)).block();
+        assertThat(carRepository.count()).isEqualTo(carRepository.countExactly()).isEqualTo(1);
+        assertThat(boatRepository.count()).isEqualTo(boatRepository.countExactly()).isEqualTo(1);
+
+        reactiveCarRepository.deleteAll().block();
+        assertThat(carRepository.count()).isEqualTo(carRepository.countExactly()).isZero();
+        assertThat(thingRepository.count()).isEqualTo(thingRepository.countExactly()).isEqualTo(2);
+    }
+
+}
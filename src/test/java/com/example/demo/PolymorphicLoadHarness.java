@@ -0,0 +1,498 @@
+package com.example.demo;
+
+import com.example.demo.domain.Boat;
+import com.example.demo.domain.Car;
+import com.example.demo.domain.Thing;
+import com.example.demo.repository.BoatRepository;
+import com.example.demo.repository.CarRepository;
+import com.example.demo.repository.ReactiveCarRepository;
+import com.example.demo.repository.ReactiveThingRepository;
+import com.example.demo.repository.ThingRepository;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoOperations;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * End-to-end load harness running against the embedded mongo. Seeds the {@code things} collection with a
+ * configurable mix of {@link Thing}, {@link Car} and {@link Boat} documents, drives concurrent read/write mixes
+ * through the repositories and reports throughput and latency percentiles per operation. Then compares discriminator
+ * strategies ({@code $in}, {@code $or}, single alias, separate collections) on raw lookups by name, and the
+ * {@link InheritanceAwarePaging} modes on shallow and deep pages, and the reactive repositories with the blocking ones.
+ * <p>
+ * Run with {@code ./gradlew loadTest}, tuned with {@code -Dload.*} properties (see {@link Settings}). Any other
+ * {@code --property=value} argument is passed to the application, eg. {@code --inheritance.mongo.entity-cache.enabled=true}.
+ *
+ * @author Lukasz Frankowski (http://lifeinide.com)
+ */
+public class PolymorphicLoadHarness {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PolymorphicLoadHarness.class);
+
+	private static final String COLLECTION = "things";
+	private static final String[] ALIASES = {"thing", "car", "boat"};
+	private static final int SEED_BATCH = 1000;
+	private static final int PAGE_SIZE = 20;
+
+	/**
+	 * Harness settings read from {@code load.*} system properties.
+	 */
+	static class Settings {
+
+		/** Number of seeded documents */
+		final int documents = Integer.getInteger("load.documents", 100_000);
+		/** Relative weights of thing, car and boat documents */
+		final int[] skew = Arrays.stream(System.getProperty("load.skew", "1,1,1").split(","))
+			.mapToInt(it -> Integer.parseInt(it.trim())).toArray();
+		/** Size of the unmapped payload field of each document in bytes */
+		final int payload = Integer.getInteger("load.payload", 256);
+		final int threads = Integer.getInteger("load.threads", 8);
+		final int warmup = Integer.getInteger("load.warmup", 5);
+		final int duration = Math.max(1, Integer.getInteger("load.duration", 30));
+		/** Percent of read operations in the mix */
+		final int reads = Integer.getInteger("load.reads", 80);
+		final boolean strategies = Boolean.parseBoolean(System.getProperty("load.strategies", "true"));
+		/** Whether to compare the reactive repositories with the blocking ones */
+		final boolean reactive = Boolean.parseBoolean(System.getProperty("load.reactive", "true"));
+		/** Page numbers (of 20 cars) read with each paging mode and keyset scrolling, empty to skip the paging comparison */
+		final int[] pages = Arrays.stream(System.getProperty("load.pages", "0,100,1000,10000").split(","))
+			.filter(it -> !it.trim().isEmpty()).mapToInt(it -> Integer.parseInt(it.trim())).toArray();
+
+		@Override
+		public String toString() {
+			return String.format("documents=%d, skew=%s, payload=%dB, threads=%d, warmup=%ds, duration=%ds, reads=%d%%",
+				documents, Arrays.toString(skew), payload, threads, warmup, duration, reads);
+		}
+
+	}
+
+	private static class Operation {
+
+		final String name;
+		final boolean read;
+		final Runnable action;
+
+		Operation(String name, boolean read, Runnable action) {
+			this.name = name;
+			this.read = read;
+			this.action = action;
+		}
+
+	}
+
+	/**
+	 * Growable per-thread latency samples in nanoseconds.
+	 */
+	private static class Samples {
+
+		private long[] values = new long[1024];
+		private int size;
+
+		void add(long value) {
+			if (size==values.length)
+				values = Arrays.copyOf(values, size * 2);
+			values[size++] = value;
+		}
+
+		void addAll(Samples other) {
+			for (int i = 0; i < other.size; i++)
+				add(other.values[i]);
+		}
+
+		long percentile(double percentile) {
+			return values[Math.min(size - 1, (int) Math.ceil(percentile * size) - 1)];
+		}
+
+	}
+
+	private final Settings settings;
+	private final MongoOperations mongoOperations;
+	private final ThingRepository<Thing> thingRepository;
+	private final CarRepository carRepository;
+	private final BoatRepository boatRepository;
+	private final ExecutorService pagingExecutor;
+	private final ReactiveThingRepository<Thing> reactiveThingRepository;
+	private final ReactiveCarRepository reactiveCarRepository;
+	private final Map<String, List<String>> ids = new HashMap<>();
+	private final Map<String, List<String>> names = new HashMap<>();
+
+	@SuppressWarnings("unchecked")
+	public PolymorphicLoadHarness(ConfigurableApplicationContext context, Settings settings) {
+		this.settings = settings;
+		this.mongoOperations = context.getBean(MongoOperations.class);
+		this.thingRepository = context.getBean("thingRepository", ThingRepository.class);
+		this.carRepository = context.getBean(CarRepository.class);
+		this.boatRepository = context.getBean(BoatRepository.class);
+		this.pagingExecutor = context.getBean(MongoConfigurer.PAGING_EXECUTOR, ExecutorService.class);
+		this.reactiveThingRepository = context.getBean("reactiveThingRepository", ReactiveThingRepository.class);
+		this.reactiveCarRepository = context.getBean(ReactiveCarRepository.class);
+	}
+
+	public static void main(String[] args) throws Exception {
+		setDefault("spring.mongodb.embedded.version", "3.4.3");
+		setDefault("spring.data.mongodb.database", "load");
+		setDefault("logging.level.org.springframework.data", "WARN");
+		setDefault("inheritance.mongo.index-advisor.enabled", "false");
+
+		Settings settings = new Settings();
+		try (ConfigurableApplicationContext context = new SpringApplicationBuilder(DemoApplication.class)
+				.web(WebApplicationType.NONE).run(args)) {
+			new PolymorphicLoadHarness(context, settings).run();
+		}
+	}
+
+	private static void setDefault(String key, String value) {
+		if (System.getProperty(key)==null)
+			System.setProperty(key, value);
+	}
+
+	public void run() throws Exception {
+		LOGGER.info("Load harness: {}", settings);
+		seed();
+
+		report("Repository workload", drive(workload(), settings.duration), settings.duration);
+
+		if (settings.strategies) {
+			int duration = Math.max(1, settings.duration / 2);
+			Map<String, Samples> results = new LinkedHashMap<>();
+			for (Operation operation: strategies())
+				results.putAll(drive(Collections.singletonList(operation), duration));
+			report("Discriminator strategies", results, duration);
+		}
+
+		if (settings.reactive) {
+			int duration = Math.max(1, settings.duration / 2);
+			Map<String, Samples> results = new LinkedHashMap<>();
+			for (Operation operation: blocking())
+				results.putAll(drive(Collections.singletonList(operation), duration));
+			reactive().forEach((name, operation) -> results.putAll(driveReactive(name, operation, duration)));
+			report("Reactive vs blocking", results, duration);
+		}
+
+		if (settings.pages.length > 0) {
+			int duration = Math.max(1, settings.duration / 2);
+			Map<String, Samples> results = new LinkedHashMap<>();
+			for (Operation operation: paging())
+				results.putAll(drive(Collections.singletonList(operation), duration));
+			report("Paging modes", results, duration);
+		}
+	}
+
+	/**
+	 * Drops and seeds the collection with raw documents, together with {@code _class} prefixed and plain name indexes.
+	 */
+	protected void seed() {
+		mongoOperations.dropCollection(COLLECTION);
+		MongoCollection<Document> collection = mongoOperations.getCollection(COLLECTION);
+		MongoClassInheritanceScanner scanner = MongoClassInheritanceScanner.getInstance();
+
+		int totalWeight = Arrays.stream(settings.skew).sum();
+		char[] chars = new char[settings.payload];
+		Arrays.fill(chars, 'x');
+		String payload = new String(chars);
+		long start = System.currentTimeMillis();
+
+		for (String alias: ALIASES) {
+			ids.put(alias, new ArrayList<>());
+			names.put(alias, new ArrayList<>());
+		}
+
+		List<Document> batch = new ArrayList<>(SEED_BATCH);
+		for (int i = 0; i < settings.documents; i++) {
+			int pick = i % totalWeight;
+			int type = 0;
+			while (pick >= settings.skew[type])
+				pick -= settings.skew[type++];
+			String alias = ALIASES[type];
+
+			ObjectId id = new ObjectId();
+			String name = alias + " " + i;
+			Document document = new Document("_id", id)
+				.append(DiscriminatorCriteria.KEY, scanner.getDiscriminatorValues(Collections.singletonList(alias)).get(0))
+				.append("name", name)
+				.append("payload", payload);
+			if (type==1)
+				document.append("model", "Model " + i);
+			else if (type==2)
+				document.append("length", i % 100);
+
+			ids.get(alias).add(id.toHexString());
+			names.get(alias).add(name);
+			batch.add(document);
+			if (batch.size()==SEED_BATCH) {
+				collection.insertMany(batch);
+				batch = new ArrayList<>(SEED_BATCH);
+			}
+		}
+		if (!batch.isEmpty())
+			collection.insertMany(batch);
+
+		collection.createIndex(Indexes.ascending(DiscriminatorCriteria.KEY, "name"));
+		collection.createIndex(Indexes.ascending("name"));
+
+		LOGGER.info("Seeded {} documents in {} ms: {}", settings.documents, System.currentTimeMillis() - start,
+			ids.entrySet().stream().map(it -> it.getKey() + "=" + it.getValue().size()).collect(Collectors.joining(", ")));
+	}
+
+	protected List<Operation> workload() {
+		List<Operation> operations = new ArrayList<>();
+
+		operations.add(new Operation("thing.findById", true, () -> thingRepository.findById(random("boat", ids))));
+		operations.add(new Operation("car.findById", true, () -> carRepository.findById(random("car", ids))));
+		operations.add(new Operation("boat.findById", true, () -> boatRepository.findById(random("boat", ids))));
+		operations.add(new Operation("thing.findByName", true, () -> thingRepository.findByName(random("car", names))));
+		operations.add(new Operation("car.findByName", true, () -> carRepository.findByName(random("car", names))));
+		operations.add(new Operation("car.queryByName", true, () -> carRepository.queryByName(random("car", names))));
+		operations.add(new Operation("boat.findAll(page)", true, () -> boatRepository.findAll(PageRequest.of(
+			ThreadLocalRandom.current().nextInt(10), 20))));
+		operations.add(new Operation("car.count", true, carRepository::count));
+
+		operations.add(new Operation("car.save", false, () -> carRepository.findById(random("car", ids))
+			.ifPresent(car -> {
+				car.setModel("Model " + System.nanoTime());
+				carRepository.save(car);
+			})));
+		operations.add(new Operation("boat.insert+delete", false, () -> {
+			Boat boat = new Boat();
+			boat.setName("A load Boat");
+			boat.setLength(ThreadLocalRandom.current().nextInt(100));
+			boatRepository.delete(boatRepository.save(boat));
+		}));
+
+		return operations;
+	}
+
+	/**
+	 * Raw lookups by name of a car (leaf type) and of any thing (whole hierarchy) with different discriminator
+	 * strategies. Separate collections are created from the seeded one.
+	 */
+	protected List<Operation> strategies() {
+		MongoCollection<Document> collection = mongoOperations.getCollection(COLLECTION);
+		MongoClassInheritanceScanner scanner = MongoClassInheritanceScanner.getInstance();
+
+		Map<String, Object> values = new LinkedHashMap<>();
+		Map<String, MongoCollection<Document>> collections = new LinkedHashMap<>();
+		for (String alias: ALIASES) {
+			Object value = scanner.getDiscriminatorValues(Collections.singletonList(alias)).get(0);
+			values.put(alias, value);
+
+			String name = COLLECTION + "_" + alias;
+			mongoOperations.dropCollection(name);
+			collection.aggregate(Arrays.asList(Aggregates.match(Filters.eq(DiscriminatorCriteria.KEY, value)),
+				Aggregates.out(name))).toCollection();
+			collections.put(alias, mongoOperations.getCollection(name));
+			collections.get(alias).createIndex(Indexes.ascending("name"));
+		}
+
+		List<Object> allValues = new ArrayList<>(values.values());
+		List<Bson> orValues = allValues.stream().map(it -> Filters.eq(DiscriminatorCriteria.KEY, it))
+			.collect(Collectors.toList());
+
+		List<Operation> operations = new ArrayList<>();
+		operations.add(new Operation("car: single alias", true, () -> collection.find(Filters.and(
+			Filters.eq("name", random("car", names)), Filters.eq(DiscriminatorCriteria.KEY, values.get("car")))).first()));
+		operations.add(new Operation("car: $in", true, () -> collection.find(Filters.and(
+			Filters.eq("name", random("car", names)), Filters.in(DiscriminatorCriteria.KEY,
+				Collections.singletonList(values.get("car"))))).first()));
+		operations.add(new Operation("car: $or", true, () -> collection.find(Filters.and(
+			Filters.eq("name", random("car", names)), Filters.or(Filters.eq(DiscriminatorCriteria.KEY,
+				values.get("car"))))).first()));
+		operations.add(new Operation("car: separate collection", true, () -> collections.get("car")
+			.find(Filters.eq("name", random("car", names))).first()));
+
+		operations.add(new Operation("thing: $in", true, () -> collection.find(Filters.and(
+			Filters.eq("name", random("boat", names)), Filters.in(DiscriminatorCriteria.KEY, allValues))).first()));
+		operations.add(new Operation("thing: $or", true, () -> collection.find(Filters.and(
+			Filters.eq("name", random("boat", names)), Filters.or(orValues))).first()));
+		operations.add(new Operation("thing: separate collections", true, () -> {
+			String name = random("boat", names);
+			for (MongoCollection<Document> it: collections.values())
+				if (it.find(Filters.eq("name", name)).first()!=null)
+					return;
+		}));
+
+		return operations;
+	}
+
+	/**
+	 * Blocking counterparts of {@link #reactive()} operations.
+	 */
+	protected List<Operation> blocking() {
+		return Arrays.asList(
+			new Operation("car.findById: blocking", true, () -> carRepository.findById(random("car", ids))),
+			new Operation("car.findByName: blocking", true, () -> carRepository.findByName(random("car", names))),
+			new Operation("thing.findByName: blocking", true, () -> thingRepository.findByName(random("boat", names))));
+	}
+
+	/**
+	 * Reactive reads, by name.
+	 */
+	protected Map<String, Supplier<Mono<?>>> reactive() {
+		Map<String, Supplier<Mono<?>>> operations = new LinkedHashMap<>();
+		operations.put("car.findById: reactive", () -> reactiveCarRepository.findById(random("car", ids)));
+		operations.put("car.findByName: reactive", () -> reactiveCarRepository.findByName(random("car", names)));
+		operations.put("thing.findByName: reactive", () -> reactiveThingRepository.findByName(random("boat", names)));
+		return operations;
+	}
+
+	/**
+	 * Reads of the same car pages with each {@link InheritanceAwarePaging.Mode}, through the repositories created with
+	 * the mode as the default, and with keyset scrolling, to compare the latency of the deep pages.
+	 */
+	protected List<Operation> paging() {
+		List<Operation> operations = new ArrayList<>();
+
+		for (InheritanceAwarePaging.Mode mode: InheritanceAwarePaging.Mode.values()) {
+			InheritanceAwareRepositorySettings repositorySettings = new InheritanceAwareRepositorySettings();
+			repositorySettings.setPagingMode(mode);
+			InheritanceAwareMongoRepositoryFactory factory = new InheritanceAwareMongoRepositoryFactory(mongoOperations,
+				repositorySettings);
+			factory.setPagingExecutor(pagingExecutor);
+			CarRepository repository = factory.getRepository(CarRepository.class);
+
+			for (int page: settings.pages)
+				operations.add(new Operation(String.format("car page %d: %s", page, mode), true,
+					() -> repository.findAll(PageRequest.of(page, PAGE_SIZE, Sort.by("name")))));
+		}
+
+		Sort sort = Sort.by("name");
+		carRepository.ensureKeysetIndex(sort);
+		Map<Integer, String> tokens = scrollTokens(sort);
+		for (int page: settings.pages) {
+			if (!tokens.containsKey(page)) {
+				LOGGER.warn("Car page {} is past the last one, skipping its keyset scrolling", page);
+				continue;
+			}
+			String token = tokens.get(page);
+			operations.add(new Operation(String.format("car page %d: KEYSET", page), true,
+				() -> carRepository.scroll(sort, PAGE_SIZE, token)));
+		}
+
+		return operations;
+	}
+
+	/**
+	 * Continuation tokens of the car pages up to the deepest of {@link Settings#pages}, found by scrolling from the first
+	 * page once. The pages past the last one are missing.
+	 */
+	private Map<Integer, String> scrollTokens(Sort sort) {
+		int last = Arrays.stream(settings.pages).max().orElse(0);
+		Map<Integer, String> tokens = new HashMap<>();
+		String token = null;
+		for (int page = 0; page <= last; page++) {
+			tokens.put(page, token);
+			token = carRepository.scroll(sort, PAGE_SIZE, token).getNextToken();
+			if (token==null)
+				break;
+		}
+		return tokens;
+	}
+
+	private String random(String alias, Map<String, List<String>> values) {
+		List<String> list = values.get(alias);
+		return list.get(ThreadLocalRandom.current().nextInt(list.size()));
+	}
+
+	/**
+	 * Runs the operations from all threads, picking reads and writes according to {@link Settings#reads}, and returns
+	 * latency samples of each operation collected after the warmup.
+	 */
+	protected Map<String, Samples> drive(List<Operation> operations, int duration) throws Exception {
+		List<Operation> reads = operations.stream().filter(it -> it.read).collect(Collectors.toList());
+		List<Operation> writes = operations.stream().filter(it -> !it.read).collect(Collectors.toList());
+
+		long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(settings.warmup);
+		long end = warmupEnd + TimeUnit.SECONDS.toNanos(duration);
+
+		ExecutorService executor = Executors.newFixedThreadPool(settings.threads);
+		List<Future<Map<String, Samples>>> futures = new ArrayList<>();
+		for (int t = 0; t < settings.threads; t++) {
+			futures.add(executor.submit(() -> {
+				Map<String, Samples> samples = new HashMap<>();
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				long now;
+				while ((now = System.nanoTime()) < end) {
+					List<Operation> pool = writes.isEmpty() || !reads.isEmpty() && random.nextInt(100) < settings.reads
+						? reads : writes;
+					Operation operation = pool.get(random.nextInt(pool.size()));
+					operation.action.run();
+					long latency = System.nanoTime() - now;
+					if (now >= warmupEnd)
+						samples.computeIfAbsent(operation.name, it -> new Samples()).add(latency);
+				}
+				return samples;
+			}));
+		}
+
+		Map<String, Samples> result = new TreeMap<>();
+		for (Future<Map<String, Samples>> future: futures)
+			future.get().forEach((name, samples) -> result.computeIfAbsent(name, it -> new Samples()).addAll(samples));
+		executor.shutdown();
+
+		result.values().forEach(it -> Arrays.sort(it.values, 0, it.size));
+		return result;
+	}
+
+	/**
+	 * Keeps {@link Settings#threads} reactive operations in flight, without blocking any thread on them, and returns
+	 * their latency samples collected after the warmup.
+	 */
+	protected Map<String, Samples> driveReactive(String name, Supplier<Mono<?>> operation, int duration) {
+		long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(settings.warmup);
+		long end = warmupEnd + TimeUnit.SECONDS.toNanos(duration);
+		Samples samples = new Samples();
+
+		Flux.<Long>generate(sink -> {
+				long now = System.nanoTime();
+				if (now < end)
+					sink.next(now);
+				else
+					sink.complete();
+			})
+			.flatMap(start -> operation.get().doFinally(signal -> {
+				if (start >= warmupEnd)
+					synchronized (samples) {
+						samples.add(System.nanoTime() - start);
+					}
+			}), settings.threads)
+			.blockLast();
+
+		Arrays.sort(samples.values, 0, samples.size);
+		return Collections.singletonMap(name, samples);
+	}
+
+	protected void report(String title, Map<String, Samples> results, int duration) {
+		StringBuilder report = new StringBuilder(String.format("%n%s (%s)%n%-30s %10s %10s %10s %10s %10s%n", title,
+			settings, "operation", "ops/s", "p50 us", "p99 us", "p999 us", "max us"));
+		results.forEach((name, samples) -> {
+			report.append(String.format("%-30s %10.0f %10.1f %10.1f %10.1f %10.1f%n", name,
+				(double) samples.size / duration, samples.percentile(0.5) / 1000.0,
+				samples.percentile(0.99) / 1000.0, samples.percentile(0.999) / 1000.0,
+				samples.values[samples.size - 1] / 1000.0));
+		});
+		LOGGER.info(report.toString());
+	}
+
+}
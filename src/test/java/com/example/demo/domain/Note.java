@@ -0,0 +1,41 @@
+package com.example.demo.domain;
+
+import com.example.demo.InheritanceAwareProjection;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+@Document(collection = "notes")
+public class Note {
+
+    @Id
+    private String id;
+
+    private String title;
+
+    @InheritanceAwareProjection.ListViewExcluded
+    private String text;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+}
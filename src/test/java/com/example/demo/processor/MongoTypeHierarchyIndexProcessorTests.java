@@ -0,0 +1,100 @@
+package com.example.demo.processor;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MongoTypeHierarchyIndexProcessorTests {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private File output;
+
+    @Before
+    public void setUp() throws IOException {
+        output = folder.newFolder("classes");
+    }
+
+    @Test
+    public void checkHierarchy() throws IOException {
+        compile(
+            source("test.Vehicle",
+                "package test;\n" +
+                "@org.springframework.data.mongodb.core.mapping.Document(collection = \"vehicles\")\n" +
+                "@org.springframework.data.annotation.TypeAlias(\"vehicle\")\n" +
+                "public abstract class Vehicle {}"),
+            source("test.Car",
+                "package test;\n" +
+                "@org.springframework.data.annotation.TypeAlias(\"car\")\n" +
+                "public class Car extends Vehicle {}"),
+            source("test.SportsCar",
+                "package test;\n" +
+                "public class SportsCar extends Car {}"),
+            source("test.Plane",
+                "package test;\n" +
+                "@org.springframework.data.annotation.TypeAlias(\"plane\")\n" +
+                "public class Plane {}"));
+
+        assertThat(readIndex()).containsExactlyInAnyOrder(
+            "test.Vehicle|vehicle|true|vehicles|",
+            "test.Car|car|false|vehicles|test.Vehicle",
+            // inherited @TypeAlias
+            "test.SportsCar|car|false|vehicles|test.Car,test.Vehicle",
+            // spring falls back to the uncapitalized class name
+            "test.Plane|plane|false|plane|");
+    }
+
+    @Test
+    public void checkEmptyIndex() throws IOException {
+        compile(source("test.Plain", "package test;\npublic class Plain {}"));
+
+        // written anyway, so the classpath root is not scanned
+        assertThat(new File(output, MongoTypeHierarchyIndexProcessor.INDEX_LOCATION)).exists();
+        assertThat(readIndex()).isEmpty();
+    }
+
+    private void compile(JavaFileObject... sources) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, null,
+            Arrays.asList("-d", output.getAbsolutePath(), "-classpath", System.getProperty("java.class.path")),
+            null, Arrays.asList(sources));
+        task.setProcessors(Collections.singletonList(new MongoTypeHierarchyIndexProcessor()));
+
+        assertThat(task.call()).isTrue();
+    }
+
+    private List<String> readIndex() throws IOException {
+        return Files.readAllLines(new File(output, MongoTypeHierarchyIndexProcessor.INDEX_LOCATION).toPath(),
+                StandardCharsets.UTF_8).stream()
+            .filter(line -> !line.startsWith("#"))
+            .collect(Collectors.toList());
+    }
+
+    private static JavaFileObject source(String className, String code) {
+        return new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.example.demo.repository;
+
+import com.example.demo.InheritanceAwarePaging;
+import com.example.demo.domain.Boat;
+
+@InheritanceAwarePaging(InheritanceAwarePaging.Mode.FACET)
+public interface FacetBoatRepository extends ThingRepository<Boat> {
+
+}
@@ -0,0 +1,14 @@
+package com.example.demo.repository;
+
+import com.example.demo.InheritanceAwareMongoRepository;
+import com.example.demo.InheritanceAwareProjection;
+import com.example.demo.domain.Note;
+
+import java.util.Optional;
+
+@InheritanceAwareProjection(listView = true)
+public interface NoteRepository extends InheritanceAwareMongoRepository<Note, String> {
+
+    Optional<Note> findByTitle(String title);
+
+}